@@ -0,0 +1,221 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.io.Files;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.fs.InputPath;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.component.Component;
+import org.sonar.api.component.Perspective;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RulePriority;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NDependIssueReportingBenchmark {
+
+  @Param({"1000", "40000"})
+  public int files;
+
+  @Param({"300000"})
+  public int violations;
+
+  @Param({"200"})
+  public int rules;
+
+  @Param({"30"})
+  public int activeRules;
+
+  private File dir;
+  private File report;
+  private DefaultFileSystem fs;
+  private NDependActiveRules activeRuleSet;
+  private StubPerspectives perspectives;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    dir = Files.createTempDir();
+    report = new File(dir, "ndepend-report.xml");
+
+    NDependReportGenerator generator = new NDependReportGenerator()
+      .setTypes(violations / 5)
+      .setViolations(5)
+      .setFiles(files)
+      .setRules(rules);
+    generator.write(report);
+
+    fs = new DefaultFileSystem();
+    fs.setWorkDir(dir);
+    for (int i = 0; i < files; i++) {
+      String path = generator.filePath(i);
+      fs.add(new DefaultInputFile(path).setAbsolutePath(path));
+    }
+
+    RulesProfile profile = RulesProfile.create();
+    for (int i = 0; i < activeRules; i++) {
+      String key = generator.ruleKey(i);
+      profile.activateRule(Rule.create(NDependPlugin.REPOSITORY_KEY, key, key), RulePriority.MAJOR);
+    }
+    activeRuleSet = NDependActiveRules.from(profile);
+
+    perspectives = new StubPerspectives();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    report.delete();
+    dir.delete();
+  }
+
+  @Benchmark
+  public int parseAndReport() {
+    perspectives.issuable.issues = 0;
+
+    NDependIssueBuffer buffer = new NDependIssueBuffer();
+    new NDependReportParser(buffer, NDependReportParser.DEFAULT_BUFFER_SIZE, 1, activeRuleSet.keys()).parse(report);
+    buffer.flushTo(new NDependIssueReporter(activeRuleSet, new NDependFileResolver(fs, perspectives)));
+
+    return perspectives.issuable.issues;
+  }
+
+  private static class StubPerspectives implements ResourcePerspectives {
+
+    private final StubIssuable issuable = new StubIssuable();
+
+    @Override
+    public <P extends Perspective> P as(Class<P> perspectiveClass, Component component) {
+      return perspectiveClass.cast(issuable);
+    }
+
+    @Override
+    public <P extends Perspective> P as(Class<P> perspectiveClass, Resource resource) {
+      return perspectiveClass.cast(issuable);
+    }
+
+    @Override
+    public <P extends Perspective> P as(Class<P> perspectiveClass, InputPath inputPath) {
+      return perspectiveClass.cast(issuable);
+    }
+
+  }
+
+  private static class StubIssuable implements Issuable, Issuable.IssueBuilder {
+
+    private int issues;
+
+    @Override
+    public IssueBuilder newIssueBuilder() {
+      return this;
+    }
+
+    @Override
+    public boolean addIssue(Issue issue) {
+      issues++;
+      return true;
+    }
+
+    @Override
+    public List<Issue> issues() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public List<Issue> resolvedIssues() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Component component() {
+      return null;
+    }
+
+    @Override
+    public IssueBuilder ruleKey(RuleKey ruleKey) {
+      return this;
+    }
+
+    @Override
+    public IssueBuilder line(Integer line) {
+      return this;
+    }
+
+    @Override
+    public IssueBuilder message(String message) {
+      return this;
+    }
+
+    @Override
+    public IssueBuilder severity(String severity) {
+      return this;
+    }
+
+    @Override
+    public IssueBuilder reporter(String reporter) {
+      return this;
+    }
+
+    @Override
+    public IssueBuilder effortToFix(Double d) {
+      return this;
+    }
+
+    @Override
+    public IssueBuilder attribute(String key, String value) {
+      return this;
+    }
+
+    @Override
+    public Issue build() {
+      return null;
+    }
+
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.io.Files;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NDependReportParserBenchmark {
+
+  @Param({"10"})
+  public int assemblies;
+
+  @Param({"10"})
+  public int namespaces;
+
+  @Param({"100"})
+  public int types;
+
+  @Param({"5"})
+  public int violations;
+
+  @Param({"1000"})
+  public int files;
+
+  @Param({"0", "3"})
+  public int depth;
+
+  @Param({"false", "true"})
+  public boolean memoryMapped;
+
+  private File dir;
+  private File report;
+
+  @Setup(Level.Trial)
+  public void generateReport() throws IOException {
+    dir = Files.createTempDir();
+    report = new File(dir, "ndepend-report.xml");
+    new NDependReportGenerator()
+      .setAssemblies(assemblies)
+      .setNamespaces(namespaces)
+      .setTypes(types)
+      .setViolations(violations)
+      .setFiles(files)
+      .setRules(200)
+      .setDepth(depth)
+      .write(report);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteReport() {
+    report.delete();
+    dir.delete();
+  }
+
+  @Benchmark
+  public void parse(final Blackhole blackhole) {
+    new NDependReportParser(new NDependReportParserCallback() {
+      @Override
+      public void onIssue(String ruleKey, String file, int line) {
+        blackhole.consume(ruleKey);
+        blackhole.consume(file);
+        blackhole.consume(line);
+      }
+    }, NDependReportParser.DEFAULT_BUFFER_SIZE, 1, null, memoryMapped).parse(report);
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.collect.ImmutableMap;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.rules.ActiveRule;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Map;
+import java.util.Set;
+
+public class NDependActiveRules {
+
+  private final Map<String, String> namesByKey;
+
+  private NDependActiveRules(Map<String, String> namesByKey) {
+    this.namesByKey = namesByKey;
+  }
+
+  public static NDependActiveRules from(RulesProfile profile) {
+    ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+    for (ActiveRule activeRule : profile.getActiveRulesByRepository(NDependPlugin.REPOSITORY_KEY)) {
+      builder.put(activeRule.getRuleKey(), activeRule.getRule().getName());
+    }
+    return new NDependActiveRules(builder.build());
+  }
+
+  public Set<String> keys() {
+    return namesByKey.keySet();
+  }
+
+  @CheckForNull
+  public String name(String ruleKey) {
+    return namesByKey.get(ruleKey);
+  }
+
+}
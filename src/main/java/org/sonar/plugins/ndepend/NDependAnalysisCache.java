@@ -0,0 +1,366 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.io.Closeables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public class NDependAnalysisCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(NDependAnalysisCache.class);
+
+  private static final int MAGIC = 0x4E444332;
+  private static final byte STRING_RECORD = 1;
+  private static final byte ISSUE_RECORD = 2;
+  private static final byte END_RECORD = 3;
+  private static final String[] ASSEMBLY_EXTENSIONS = {".dll", ".exe"};
+
+  private final File cacheFile;
+
+  public NDependAnalysisCache(File workDir) {
+    this.cacheFile = new File(workDir, "ndepend-cache.bin");
+  }
+
+  @CheckForNull
+  public String inputsHash(String ruleRunnerPath, String ndependProjectPath, String rules, Collection<String> activeRuleKeys) {
+    try {
+      File ruleRunner = new File(ruleRunnerPath);
+      if (!ruleRunner.isFile()) {
+        LOG.debug("Cannot locate the rule runner " + ruleRunnerPath + ", the NDepend analysis cache is disabled.");
+        return null;
+      }
+
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      update(digest, ruleRunner);
+      update(digest, rules);
+      for (String activeRuleKey : Ordering.natural().sortedCopy(activeRuleKeys)) {
+        update(digest, activeRuleKey);
+      }
+      digest.update((byte) 0);
+
+      File ndependProject = new File(ndependProjectPath);
+      update(digest, ndependProject);
+
+      NDependProject project = NDependProject.parse(ndependProject);
+      for (String assembly : project.assemblies) {
+        File assemblyFile = project.resolve(assembly);
+        if (assemblyFile == null) {
+          LOG.debug("Cannot locate the assembly \"" + assembly + "\" referenced by " + ndependProjectPath + ", the NDepend analysis cache is disabled.");
+          return null;
+        }
+        update(digest, assemblyFile);
+      }
+
+      return toHex(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw Throwables.propagate(e);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  public boolean replay(String hash, NDependReportParserCallback callback) {
+    if (!cacheFile.isFile()) {
+      return false;
+    }
+
+    try {
+      // The whole file is checked before replaying anything, so that a truncated cache does not replay a part of its issues
+      if (!read(hash, null)) {
+        return false;
+      }
+      read(hash, callback);
+      return true;
+    } catch (IOException e) {
+      LOG.warn("Unable to read the NDepend analysis cache " + cacheFile.getAbsolutePath() + ", NDepend will be executed", e);
+      delete(cacheFile);
+      return false;
+    }
+  }
+
+  /**
+   * The file holds a sequence of records: a string, defined before its first use and identified by its position among
+   * the strings, an issue referencing the strings of its rule key and file, or the end of the file.
+   */
+  private boolean read(String hash, @Nullable NDependReportParserCallback callback) throws IOException {
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+      if (in.readInt() != MAGIC || !hash.equals(in.readUTF())) {
+        return false;
+      }
+
+      List<String> strings = Lists.newArrayList();
+      while (true) {
+        byte record = in.readByte();
+        if (record == STRING_RECORD) {
+          strings.add(in.readUTF());
+        } else if (record == ISSUE_RECORD) {
+          String ruleKey = string(strings, in.readInt());
+          String file = string(strings, in.readInt());
+          int line = in.readInt();
+          if (callback != null) {
+            callback.onIssue(ruleKey, file, line);
+          }
+        } else if (record == END_RECORD) {
+          return true;
+        } else {
+          throw new IOException("Invalid record: " + record);
+        }
+      }
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  private static String string(List<String> strings, int id) throws IOException {
+    if (id < 0 || id >= strings.size()) {
+      throw new IOException("Invalid string id: " + id);
+    }
+    return strings.get(id);
+  }
+
+  private static void delete(File file) {
+    if (file.exists() && !file.delete()) {
+      LOG.debug("Unable to delete " + file.getAbsolutePath());
+    }
+  }
+
+  /**
+   * Records the issues passed to {@code delegate}, writing them to a temporary file as they arrive.
+   */
+  public Recorder recorder(String hash, NDependReportParserCallback delegate) {
+    return new Recorder(hash, delegate);
+  }
+
+  public class Recorder implements NDependReportParserCallback {
+
+    private final NDependReportParserCallback delegate;
+    private final Map<String, Integer> stringIds = Maps.newHashMap();
+    private final File tmpFile = new File(cacheFile.getPath() + ".tmp");
+    private DataOutputStream out;
+
+    private Recorder(String hash, NDependReportParserCallback delegate) {
+      this.delegate = delegate;
+      try {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        out.writeInt(MAGIC);
+        out.writeUTF(hash);
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+
+    @Override
+    public void onIssue(String ruleKey, String file, int line) {
+      if (out != null) {
+        try {
+          int ruleKeyId = id(ruleKey);
+          int fileId = id(file);
+          out.writeByte(ISSUE_RECORD);
+          out.writeInt(ruleKeyId);
+          out.writeInt(fileId);
+          out.writeInt(line);
+        } catch (IOException e) {
+          fail(e);
+        }
+      }
+
+      delegate.onIssue(ruleKey, file, line);
+    }
+
+    private int id(String value) throws IOException {
+      Integer id = stringIds.get(value);
+      if (id == null) {
+        out.writeByte(STRING_RECORD);
+        out.writeUTF(value);
+        id = stringIds.size();
+        stringIds.put(value, id);
+      }
+      return id;
+    }
+
+    /**
+     * Makes the recorded issues the ones to replay for the inputs of this recorder.
+     */
+    public void save() {
+      if (out == null) {
+        return;
+      }
+
+      try {
+        out.writeByte(END_RECORD);
+        out.close();
+        out = null;
+        delete(cacheFile);
+        if (!tmpFile.renameTo(cacheFile)) {
+          throw new IOException("Unable to rename " + tmpFile.getAbsolutePath() + " to " + cacheFile.getAbsolutePath());
+        }
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+
+    /**
+     * Discards the recorded issues, unless they were saved.
+     */
+    public void close() {
+      if (out != null) {
+        Closeables.closeQuietly(out);
+        out = null;
+      }
+      delete(tmpFile);
+    }
+
+    private void fail(IOException e) {
+      LOG.warn("Unable to save the NDepend analysis cache " + cacheFile.getAbsolutePath(), e);
+      close();
+    }
+
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(Charsets.UTF_8));
+    digest.update((byte) 0);
+  }
+
+  private static void update(MessageDigest digest, File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[64 * 1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+    digest.update((byte) 0);
+  }
+
+  static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder();
+    for (byte b : bytes) {
+      sb.append(String.format("%02x", b));
+    }
+    return sb.toString();
+  }
+
+  private static class NDependProject {
+
+    private final File baseDir;
+    private final List<String> assemblies = Lists.newArrayList();
+    private final List<String> dirs = Lists.newArrayList();
+
+    private NDependProject(File baseDir) {
+      this.baseDir = baseDir;
+    }
+
+    public static NDependProject parse(File file) throws IOException {
+      NDependProject project = new NDependProject(file.getAbsoluteFile().getParentFile());
+
+      InputStreamReader reader = null;
+      XMLStreamReader stream = null;
+      try {
+        reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8);
+        stream = NDependXmlFactory.inputFactory().createXMLStreamReader(reader);
+
+        String parent = null;
+        while (stream.hasNext()) {
+          int next = stream.next();
+          if (next == XMLStreamConstants.START_ELEMENT) {
+            String tagName = stream.getLocalName();
+            if ("Assemblies".equals(tagName) || "Dirs".equals(tagName)) {
+              parent = tagName;
+            } else if ("Assemblies".equals(parent) && "Name".equals(tagName)) {
+              project.assemblies.add(stream.getElementText().trim());
+            } else if ("Dirs".equals(parent) && "Dir".equals(tagName)) {
+              project.dirs.add(stream.getElementText().trim());
+            }
+          } else if (next == XMLStreamConstants.END_ELEMENT && stream.getLocalName().equals(parent)) {
+            parent = null;
+          }
+        }
+      } catch (XMLStreamException e) {
+        throw new IOException(e);
+      } finally {
+        if (stream != null) {
+          try {
+            stream.close();
+          } catch (XMLStreamException e) {
+            LOG.debug("Unable to close " + file, e);
+          }
+        }
+        Closeables.closeQuietly(reader);
+      }
+
+      return project;
+    }
+
+    @CheckForNull
+    public File resolve(String assembly) {
+      for (String dir : dirs) {
+        File directory = new File(dir.replace("$(NdProjectDir)", baseDir.getPath()));
+        if (!directory.isAbsolute()) {
+          directory = new File(baseDir, directory.getPath());
+        }
+
+        for (String extension : ASSEMBLY_EXTENSIONS) {
+          File file = new File(directory, assembly + extension);
+          if (file.isFile()) {
+            return file;
+          }
+        }
+      }
+
+      return null;
+    }
+
+  }
+
+}
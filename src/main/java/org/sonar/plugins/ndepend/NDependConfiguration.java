@@ -51,6 +51,58 @@ public class NDependConfiguration implements BatchExtension, ServerExtension {
     return settings.getInt(NDependPlugin.TIMEOUT_PROPERTY_KEY);
   }
 
+  public int parserThreads() {
+    return settings.getInt(NDependPlugin.PARSER_THREADS_PROPERTY_KEY);
+  }
+
+  public boolean cacheEnabled() {
+    return settings.getBoolean(NDependPlugin.CACHE_ENABLED_PROPERTY_KEY);
+  }
+
+  public boolean streamReport() {
+    return settings.getBoolean(NDependPlugin.STREAM_REPORT_PROPERTY_KEY);
+  }
+
+  public boolean compressReport() {
+    return settings.getBoolean(NDependPlugin.COMPRESS_REPORT_PROPERTY_KEY);
+  }
+
+  public String reportFileName() {
+    return compressReport() ? "ndepend-report.xml.gz" : "ndepend-report.xml";
+  }
+
+  public boolean dumpMetrics() {
+    return settings.getBoolean(NDependPlugin.DUMP_METRICS_PROPERTY_KEY);
+  }
+
+  public boolean activeRulesOnly() {
+    return settings.getBoolean(NDependPlugin.ACTIVE_RULES_ONLY_PROPERTY_KEY);
+  }
+
+  public int concurrentRuns() {
+    return settings.getInt(NDependPlugin.CONCURRENT_RUNS_PROPERTY_KEY);
+  }
+
+  public int maxBufferedViolations() {
+    return settings.getInt(NDependPlugin.MAX_BUFFERED_VIOLATIONS_PROPERTY_KEY);
+  }
+
+  public boolean daemon() {
+    return settings.getBoolean(NDependPlugin.DAEMON_PROPERTY_KEY);
+  }
+
+  public int stallTimeout() {
+    return settings.getInt(NDependPlugin.STALL_TIMEOUT_PROPERTY_KEY);
+  }
+
+  public boolean adaptiveTimeout() {
+    return settings.getBoolean(NDependPlugin.ADAPTIVE_TIMEOUT_PROPERTY_KEY);
+  }
+
+  public boolean memoryMappedReport() {
+    return settings.getBoolean(NDependPlugin.MEMORY_MAPPED_REPORT_PROPERTY_KEY);
+  }
+
   private String checkAbsolutePath(String property) {
     String path = settings.getString(property);
     Preconditions.checkNotNull(path, "The property \"" + property + "\" must be set (to an absolute path).");
@@ -0,0 +1,229 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.io.Closeables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.utils.command.Command;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a single rule runner started with {@code --daemon} and sends it one request per line on its standard input:
+ * {@code PING}, answered by {@code PONG}, and {@code ANALYZE <ndproj> <report> [<rule set>]} (tab separated),
+ * answered by {@code OK} or {@code ERROR <message>}.
+ * The daemon analyzes one project at a time: concurrent requests wait for each other.
+ */
+public class NDependDaemonExecutor extends NDependExecutor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(NDependDaemonExecutor.class);
+
+  private static final long DEFAULT_PING_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+  private final long pingTimeoutMillis;
+  private String executable;
+  private Process process;
+  private Writer requests;
+  private BlockingQueue<Optional<String>> responses;
+  private NDependProcessOutput output;
+  private int starts;
+
+  public NDependDaemonExecutor(long stallTimeoutMillis, boolean adaptiveTimeout) {
+    super(stallTimeoutMillis, adaptiveTimeout);
+    this.pingTimeoutMillis = DEFAULT_PING_TIMEOUT_MILLIS;
+  }
+
+  @VisibleForTesting
+  NDependDaemonExecutor(long stallTimeoutMillis, long pollIntervalMillis, long pingTimeoutMillis) {
+    super(stallTimeoutMillis, false, pollIntervalMillis);
+    this.pingTimeoutMillis = pingTimeoutMillis;
+  }
+
+  @Override
+  synchronized void run(String executable, String ndependProject, File reportFile, @Nullable File ruleSetFile, long deadlineMillis) {
+    ensureRunning(executable);
+
+    StringBuilder request = new StringBuilder("ANALYZE\t").append(ndependProject).append('\t').append(reportFile.getAbsolutePath());
+    if (ruleSetFile != null) {
+      request.append('\t').append(ruleSetFile.getAbsolutePath());
+    }
+
+    final BlockingQueue<Optional<String>> pending = send(request.toString());
+    Optional<String> response;
+    try {
+      response = await(Command.create(executable).addArgument("--daemon"), new Completion<Optional<String>>() {
+        @Override
+        public Optional<String> poll(long timeoutMillis) throws InterruptedException {
+          return pending.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+      }, reportFile, deadlineMillis, output);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      stop();
+      throw new IllegalStateException("Interrupted while waiting for the NDepend daemon", e);
+    } catch (RuntimeException e) {
+      stop();
+      throw e;
+    }
+
+    String result = check(response);
+    if (!"OK".equals(result)) {
+      throw new IllegalStateException("The NDepend daemon failed to analyze " + ndependProject + ": " + result);
+    }
+  }
+
+  public synchronized int starts() {
+    return starts;
+  }
+
+  public synchronized void stop() {
+    if (process != null) {
+      Closeables.closeQuietly(requests);
+      process.destroy();
+      output.flush();
+      process = null;
+      requests = null;
+      responses = null;
+      output = null;
+    }
+  }
+
+  private void ensureRunning(String executable) {
+    if (process != null && executable.equals(this.executable)) {
+      try {
+        if ("PONG".equals(request("PING", pingTimeoutMillis))) {
+          return;
+        }
+      } catch (IllegalStateException e) {
+        LOG.debug("Health check of the NDepend daemon failed", e);
+      }
+      LOG.warn("The NDepend daemon does not answer anymore, restarting it.");
+    }
+
+    stop();
+    start(executable);
+  }
+
+  private void start(String executable) {
+    LOG.info("Starting the NDepend daemon: " + executable);
+    try {
+      process = new ProcessBuilder(executable, "--daemon").start();
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to start the NDepend daemon: " + executable, e);
+    }
+
+    this.executable = executable;
+    requests = new OutputStreamWriter(process.getOutputStream(), Charsets.UTF_8);
+    responses = new LinkedBlockingQueue<Optional<String>>();
+    output = newOutput();
+    starts++;
+
+    startOutputReader(process.getErrorStream(), output, true);
+
+    Thread reader = new Thread(new ResponseReader(new BufferedReader(new InputStreamReader(process.getInputStream(), Charsets.UTF_8)), responses), "NDepend daemon reader");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  private String request(String request, long timeoutMillis) {
+    BlockingQueue<Optional<String>> pending = send(request);
+
+    Optional<String> response;
+    try {
+      response = pending.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      stop();
+      throw new IllegalStateException("Interrupted while waiting for the NDepend daemon", e);
+    }
+
+    if (response == null) {
+      stop();
+      throw new IllegalStateException("The NDepend daemon did not answer within " + timeoutMillis + " ms");
+    }
+    return check(response);
+  }
+
+  private BlockingQueue<Optional<String>> send(String request) {
+    BlockingQueue<Optional<String>> pending = responses;
+    try {
+      requests.write(request);
+      requests.write('\n');
+      requests.flush();
+    } catch (IOException e) {
+      stop();
+      throw new IllegalStateException("Unable to send a request to the NDepend daemon", e);
+    }
+    return pending;
+  }
+
+  /**
+   * An absent response means that the daemon closed its output.
+   */
+  private String check(Optional<String> response) {
+    if (!response.isPresent()) {
+      stop();
+      throw new IllegalStateException("The NDepend daemon exited");
+    }
+    return response.get();
+  }
+
+  private static class ResponseReader implements Runnable {
+
+    private final BufferedReader reader;
+    private final BlockingQueue<Optional<String>> responses;
+
+    public ResponseReader(BufferedReader reader, BlockingQueue<Optional<String>> responses) {
+      this.reader = reader;
+      this.responses = responses;
+    }
+
+    @Override
+    public void run() {
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          responses.add(Optional.of(line));
+        }
+      } catch (IOException e) {
+        LOG.debug("Error while reading the output of the NDepend daemon", e);
+      } finally {
+        Closeables.closeQuietly(reader);
+        responses.add(Optional.<String>absent());
+      }
+    }
+
+  }
+
+}
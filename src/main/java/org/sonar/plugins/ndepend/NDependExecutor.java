@@ -19,25 +19,211 @@
  */
 package org.sonar.plugins.ndepend;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.command.Command;
 import org.sonar.api.utils.command.CommandException;
-import org.sonar.api.utils.command.CommandExecutor;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class NDependExecutor {
 
+  private static final Logger LOG = LoggerFactory.getLogger(NDependExecutor.class);
+
+  private static final long DEFAULT_POLL_INTERVAL_MILLIS = 1000;
+  private static final long OUTPUT_DRAIN_TIMEOUT_MILLIS = 5000;
+  private static final int OUTPUT_TAIL_LINES = 20;
+  private static final int MAX_LOGGED_OUTPUT_LINES_PER_SECOND = 50;
+
+  private final long stallTimeoutMillis;
+  private final boolean adaptiveTimeout;
+  private final long pollIntervalMillis;
+
+  public NDependExecutor() {
+    this(0, false);
+  }
+
+  public NDependExecutor(long stallTimeoutMillis, boolean adaptiveTimeout) {
+    this(stallTimeoutMillis, adaptiveTimeout, DEFAULT_POLL_INTERVAL_MILLIS);
+  }
+
+  @VisibleForTesting
+  NDependExecutor(long stallTimeoutMillis, boolean adaptiveTimeout, long pollIntervalMillis) {
+    this.stallTimeoutMillis = stallTimeoutMillis;
+    this.adaptiveTimeout = adaptiveTimeout;
+    this.pollIntervalMillis = pollIntervalMillis;
+  }
+
   public void execute(String executable, String ndependProject, File reportFile, int timeout) {
+    execute(executable, ndependProject, reportFile, null, timeout);
+  }
+
+  public void execute(String executable, String ndependProject, File reportFile, @Nullable File ruleSetFile, int timeout) {
+    NDependRuntimeHistory history = new NDependRuntimeHistory(reportFile.getAbsoluteFile().getParentFile());
+    long timeoutMillis = TimeUnit.MINUTES.toMillis(timeout);
+    long deadlineMillis = adaptiveTimeout ? history.deadlineMillis(ndependProject, timeoutMillis) : timeoutMillis;
+    if (deadlineMillis < timeoutMillis) {
+      LOG.info("Previous NDepend executions of " + ndependProject + " were short, its execution will be interrupted after " + deadlineMillis + " ms");
+    }
+
+    long start = System.currentTimeMillis();
+    run(executable, ndependProject, reportFile, ruleSetFile, deadlineMillis);
+    history.record(ndependProject, System.currentTimeMillis() - start);
+  }
+
+  void run(String executable, String ndependProject, File reportFile, @Nullable File ruleSetFile, long deadlineMillis) {
     Command cmd = Command.create(executable)
       .addArgument(ndependProject)
       .addArgument(reportFile.getAbsolutePath());
+    if (ruleSetFile != null) {
+      cmd.addArgument(ruleSetFile.getAbsolutePath());
+    }
+
+    List<String> commandLine = Lists.newArrayList(cmd.getExecutable());
+    commandLine.addAll(cmd.getArguments());
+
+    final Process process;
+    try {
+      process = new ProcessBuilder(commandLine).start();
+    } catch (IOException e) {
+      throw new CommandException(cmd, e);
+    }
+
+    NDependProcessOutput output = newOutput();
+    Thread stdOut = startOutputReader(process.getInputStream(), output, false);
+    Thread stdErr = startOutputReader(process.getErrorStream(), output, true);
+
+    try {
+      int exitCode = await(cmd, new Completion<Integer>() {
+        @Override
+        public Integer poll(long timeoutMillis) throws InterruptedException {
+          Integer exitCode = exitCode(process);
+          if (exitCode == null) {
+            Thread.sleep(timeoutMillis);
+          }
+          return exitCode;
+        }
+      }, reportFile, deadlineMillis, output);
+
+      stdOut.join(OUTPUT_DRAIN_TIMEOUT_MILLIS);
+      stdErr.join(OUTPUT_DRAIN_TIMEOUT_MILLIS);
+      output.flush();
+      if (exitCode != 0) {
+        throw failure(cmd, "NDepend execution failed with exit code: " + exitCode, output);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CommandException(cmd, e);
+    } finally {
+      process.destroy();
+    }
+  }
+
+  /**
+   * Polls {@code completion} until it returns a result, and interrupts NDepend once it exceeds its deadline or stops making progress.
+   */
+  <T> T await(Command cmd, Completion<T> completion, File reportFile, long deadlineMillis, NDependProcessOutput output) throws InterruptedException {
+    Progress progress = new Progress(reportFile, output);
+    long start = System.currentTimeMillis();
+    while (true) {
+      T result = completion.poll(pollIntervalMillis);
+      if (result != null) {
+        return result;
+      }
+
+      long now = System.currentTimeMillis();
+      if (now - start > deadlineMillis) {
+        throw failure(cmd, "NDepend execution timed out after " + deadlineMillis + " ms", output);
+      }
+      if (stallTimeoutMillis > 0 && progress.idleMillis(now) > stallTimeoutMillis) {
+        throw failure(cmd, "NDepend made no progress during " + stallTimeoutMillis + " ms, its execution was interrupted", output);
+      }
+    }
+  }
 
-    int exitCode = CommandExecutor.create().execute(cmd, TimeUnit.MINUTES.toMillis(timeout));
+  static NDependProcessOutput newOutput() {
+    return new NDependProcessOutput(OUTPUT_TAIL_LINES, MAX_LOGGED_OUTPUT_LINES_PER_SECOND);
+  }
 
-    if (exitCode != 0) {
-      throw new CommandException(cmd, "NDepend execution failed with exit code: " + exitCode, null);
+  @CheckForNull
+  private static Integer exitCode(Process process) {
+    try {
+      return process.exitValue();
+    } catch (IllegalThreadStateException e) {
+      return null;
     }
   }
 
+  static CommandException failure(Command cmd, String message, NDependProcessOutput output) {
+    List<String> tail = output.tail();
+    String summary = tail.isEmpty() ? message : (message + ". Last lines of output:\n" + Joiner.on('\n').join(tail));
+    return new CommandException(cmd, summary, null);
+  }
+
+  static Thread startOutputReader(final InputStream in, final NDependProcessOutput output, final boolean error) {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          output.read(in, error);
+        } catch (IOException e) {
+          LOG.debug("Error while reading the output of NDepend", e);
+        }
+      }
+    }, error ? "NDepend stderr reader" : "NDepend stdout reader");
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  interface Completion<T> {
+
+    /**
+     * Waits at most {@code timeoutMillis} for the result.
+     */
+    @CheckForNull
+    T poll(long timeoutMillis) throws InterruptedException;
+
+  }
+
+  /**
+   * Output lines and growth of the report both count as progress.
+   */
+  private static class Progress {
+
+    private final File reportFile;
+    private final NDependProcessOutput output;
+    private long reportLength;
+    private long outputLines;
+    private long lastProgressMillis = System.currentTimeMillis();
+
+    public Progress(File reportFile, NDependProcessOutput output) {
+      this.reportFile = reportFile;
+      this.output = output;
+      this.reportLength = reportFile.length();
+    }
+
+    public long idleMillis(long now) {
+      long length = reportFile.length();
+      long lines = output.lines();
+      if (length != reportLength || lines != outputLines) {
+        reportLength = length;
+        outputLines = lines;
+        lastProgressMillis = now;
+      }
+      return now - lastProgressMillis;
+    }
+
+  }
+
 }
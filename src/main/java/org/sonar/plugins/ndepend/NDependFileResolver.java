@@ -0,0 +1,95 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.InputFile.Type;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.utils.PathUtils;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+public class NDependFileResolver {
+
+  private final FileSystem fs;
+  private final ResourcePerspectives perspectives;
+  private final boolean caseSensitive;
+  private Map<String, InputFile> inputFilesByPath;
+  private final Map<InputFile, Issuable> issuables = Maps.newHashMap();
+
+  public NDependFileResolver(FileSystem fs, ResourcePerspectives perspectives) {
+    this(fs, perspectives, File.separatorChar == '/');
+  }
+
+  @VisibleForTesting
+  NDependFileResolver(FileSystem fs, ResourcePerspectives perspectives, boolean caseSensitive) {
+    this.fs = fs;
+    this.perspectives = perspectives;
+    this.caseSensitive = caseSensitive;
+  }
+
+  @Nullable
+  public InputFile inputFile(String path) {
+    return inputFilesByPath().get(normalize(path));
+  }
+
+  public Set<String> normalizedPaths() {
+    return inputFilesByPath().keySet();
+  }
+
+  @Nullable
+  public Issuable issuable(InputFile inputFile) {
+    if (issuables.containsKey(inputFile)) {
+      return issuables.get(inputFile);
+    }
+
+    Issuable issuable = perspectives.as(Issuable.class, inputFile);
+    issuables.put(inputFile, issuable);
+    return issuable;
+  }
+
+  private Map<String, InputFile> inputFilesByPath() {
+    if (inputFilesByPath == null) {
+      inputFilesByPath = Maps.newHashMap();
+      for (InputFile inputFile : fs.inputFiles(fs.predicates().hasType(Type.MAIN))) {
+        inputFilesByPath.put(normalize(inputFile.absolutePath()), inputFile);
+      }
+    }
+    return inputFilesByPath;
+  }
+
+  public String normalize(String path) {
+    String result = PathUtils.sanitize(path.replace('\\', '/'));
+    if (result == null) {
+      result = path;
+    }
+    return caseSensitive ? result : result.toLowerCase(Locale.ENGLISH);
+  }
+
+}
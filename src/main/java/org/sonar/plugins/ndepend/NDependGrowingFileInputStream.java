@@ -0,0 +1,95 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a file while another process is still writing it: reads block until more bytes are written,
+ * and the end of the stream is only reached once the writer is done.
+ */
+public class NDependGrowingFileInputStream extends InputStream {
+
+  private final File file;
+  private final Future<?> writer;
+  private final long pollIntervalMillis;
+  private RandomAccessFile raf;
+
+  public NDependGrowingFileInputStream(File file, Future<?> writer, long pollIntervalMillis) {
+    this.file = file;
+    this.writer = writer;
+    this.pollIntervalMillis = pollIntervalMillis;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] b = new byte[1];
+    int read = read(b, 0, 1);
+    return read == -1 ? -1 : b[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+
+    while (true) {
+      boolean done = writer.isDone();
+
+      if (raf == null && file.exists()) {
+        raf = new RandomAccessFile(file, "r");
+      }
+      if (raf != null) {
+        int read = raf.read(b, off, len);
+        if (read > 0) {
+          return read;
+        }
+      }
+
+      if (done) {
+        return -1;
+      }
+      sleep();
+    }
+  }
+
+  private void sleep() throws InterruptedIOException {
+    try {
+      Thread.sleep(pollIntervalMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for " + file.getAbsolutePath() + " to grow");
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (raf != null) {
+      raf.close();
+    }
+  }
+
+}
@@ -0,0 +1,356 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.primitives.Ints;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+public class NDependIssueBuffer implements NDependReportParserCallback {
+
+  private static final int RUN_BUFFER_SIZE = 8 * 1024;
+
+  private static final Ordering<FileViolations> BY_FILE_ID = new Ordering<FileViolations>() {
+    @Override
+    public int compare(FileViolations a, FileViolations b) {
+      return Ints.compare(a.fileId, b.fileId);
+    }
+  };
+
+  private final Map<String, Integer> ruleIds = Maps.newHashMap();
+  private final List<String> ruleKeys = Lists.newArrayList();
+  private final List<String> files = Lists.newArrayList();
+  private final Map<String, FileViolations> violationsByFile = Maps.newHashMap();
+  private final Map<String, Integer> spilledFileIds = Maps.newHashMap();
+  private final File spillDir;
+  private final int maxBufferedViolations;
+  private final List<long[]> runs = Lists.newArrayList();
+  private File spillFile;
+  private int buffered;
+  private long received;
+
+  public NDependIssueBuffer() {
+    this(null, 0);
+  }
+
+  /**
+   * Once {@code maxBufferedViolations} violations are held in memory, they are written as a sorted run to a file in {@code spillDir}.
+   */
+  public NDependIssueBuffer(@Nullable File spillDir, int maxBufferedViolations) {
+    this.spillDir = spillDir;
+    this.maxBufferedViolations = spillDir == null ? 0 : maxBufferedViolations;
+  }
+
+  @Override
+  public void onIssue(String ruleKey, String file, int line) {
+    FileViolations violations = violationsByFile.get(file);
+    if (violations == null) {
+      violations = new FileViolations(fileId(file));
+      violationsByFile.put(file, violations);
+    }
+
+    violations.add(pack(ruleId(ruleKey), line));
+    received++;
+
+    buffered++;
+    if (maxBufferedViolations > 0 && buffered >= maxBufferedViolations) {
+      spill();
+    }
+  }
+
+  public long received() {
+    return received;
+  }
+
+  public int spilledRuns() {
+    return runs.size();
+  }
+
+  public void replay(final NDependReportParserCallback callback, Collection<String> files) {
+    if (runs.isEmpty()) {
+      for (String file : files) {
+        FileViolations violations = violationsByFile.get(file);
+        if (violations != null) {
+          for (int i = 0; i < violations.size; i++) {
+            long packed = violations.values[i];
+            callback.onIssue(ruleKeys.get((int) packed), file, (int) (packed >>> 32));
+          }
+        }
+      }
+    } else {
+      merge(ImmutableSet.copyOf(files), new FileHandler() {
+        @Override
+        public void handle(String file, long[] packedViolations) {
+          for (long packed : packedViolations) {
+            callback.onIssue(ruleKeys.get((int) packed), file, (int) (packed >>> 32));
+          }
+        }
+      });
+    }
+  }
+
+  public void flushTo(final NDependIssueReporter reporter) {
+    merge(null, new FileHandler() {
+      @Override
+      public void handle(String file, long[] packedViolations) {
+        reporter.report(file, unpack(packedViolations));
+      }
+    });
+
+    close();
+  }
+
+  public void close() {
+    violationsByFile.clear();
+    files.clear();
+    spilledFileIds.clear();
+    buffered = 0;
+    runs.clear();
+    if (spillFile != null) {
+      spillFile.delete();
+      spillFile = null;
+    }
+  }
+
+  private int ruleId(String ruleKey) {
+    Integer id = ruleIds.get(ruleKey);
+    if (id == null) {
+      id = ruleKeys.size();
+      ruleIds.put(ruleKey, id);
+      ruleKeys.add(ruleKey);
+    }
+    return id;
+  }
+
+  private int fileId(String file) {
+    Integer id = spilledFileIds.get(file);
+    if (id == null) {
+      id = files.size();
+      files.add(file);
+    }
+    return id;
+  }
+
+  /**
+   * A run is a sequence of blocks, one per file by increasing file id: the file id, the number of violations and their sorted packed values.
+   */
+  private void spill() {
+    DataOutputStream out = null;
+    try {
+      if (spillFile == null) {
+        spillFile = File.createTempFile("ndepend-violations", ".bin", spillDir);
+      }
+
+      long offset = spillFile.length();
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile, true), RUN_BUFFER_SIZE));
+      for (FileViolations violations : BY_FILE_ID.sortedCopy(violationsByFile.values())) {
+        long[] values = violations.sortedDistinct();
+        out.writeInt(violations.fileId);
+        out.writeInt(values.length);
+        for (long value : values) {
+          out.writeLong(value);
+        }
+      }
+      out.close();
+
+      runs.add(new long[] {offset, spillFile.length() - offset});
+      for (FileViolations violations : violationsByFile.values()) {
+        spilledFileIds.put(files.get(violations.fileId), violations.fileId);
+      }
+      violationsByFile.clear();
+      buffered = 0;
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      Closeables.closeQuietly(out);
+    }
+  }
+
+  private void merge(@Nullable Set<String> selectedFiles, FileHandler handler) {
+    List<RunCursor> cursors = Lists.newArrayList();
+    try {
+      PriorityQueue<RunCursor> queue = new PriorityQueue<RunCursor>(Math.max(1, runs.size()), RunCursor.BY_FILE_ID);
+      for (long[] run : runs) {
+        RunCursor cursor = new RunCursor(spillFile, run[0], run[1]);
+        cursors.add(cursor);
+        if (cursor.next()) {
+          queue.add(cursor);
+        }
+      }
+
+      for (int fileId = 0; fileId < files.size(); fileId++) {
+        String file = files.get(fileId);
+        boolean selected = selectedFiles == null || selectedFiles.contains(file);
+        FileViolations violations = new FileViolations(fileId);
+
+        while (!queue.isEmpty() && queue.peek().fileId == fileId) {
+          RunCursor cursor = queue.poll();
+          cursor.readInto(selected ? violations : null);
+          if (cursor.next()) {
+            queue.add(cursor);
+          }
+        }
+
+        FileViolations inMemory = violationsByFile.get(file);
+        if (selected && inMemory != null) {
+          violations.addAll(inMemory);
+        }
+
+        if (selected && violations.size > 0) {
+          handler.handle(file, violations.sortedDistinct());
+        }
+      }
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      for (RunCursor cursor : cursors) {
+        Closeables.closeQuietly(cursor.in);
+      }
+    }
+  }
+
+  private List<NDependViolation> unpack(long[] packedViolations) {
+    ImmutableList.Builder<NDependViolation> builder = ImmutableList.builder();
+    for (long packed : packedViolations) {
+      builder.add(new NDependViolation(ruleKeys.get((int) packed), (int) (packed >>> 32)));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Sorting the packed values orders the violations by line, then by rule.
+   */
+  private static long pack(int ruleId, int line) {
+    return ((long) line << 32) | (ruleId & 0xFFFFFFFFL);
+  }
+
+  private interface FileHandler {
+
+    void handle(String file, long[] packedViolations);
+
+  }
+
+  private static class RunCursor {
+
+    private static final Comparator<RunCursor> BY_FILE_ID = new Comparator<RunCursor>() {
+      @Override
+      public int compare(RunCursor a, RunCursor b) {
+        return Ints.compare(a.fileId, b.fileId);
+      }
+    };
+
+    private final DataInputStream in;
+    private long remaining;
+    private int fileId;
+    private int count;
+
+    public RunCursor(File file, long offset, long length) throws IOException {
+      FileInputStream fileIn = new FileInputStream(file);
+      fileIn.getChannel().position(offset);
+      this.in = new DataInputStream(new BufferedInputStream(fileIn, RUN_BUFFER_SIZE));
+      this.remaining = length;
+    }
+
+    public boolean next() throws IOException {
+      if (remaining == 0) {
+        return false;
+      }
+      fileId = in.readInt();
+      count = in.readInt();
+      remaining -= 8 + 8L * count;
+      return true;
+    }
+
+    public void readInto(@Nullable FileViolations violations) throws IOException {
+      if (violations == null) {
+        ByteStreams.skipFully(in, 8L * count);
+      } else {
+        for (int i = 0; i < count; i++) {
+          violations.add(in.readLong());
+        }
+      }
+    }
+
+  }
+
+  private static class FileViolations {
+
+    private final int fileId;
+    private long[] values = new long[4];
+    private int size;
+
+    public FileViolations(int fileId) {
+      this.fileId = fileId;
+    }
+
+    public void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    public void addAll(FileViolations other) {
+      for (int i = 0; i < other.size; i++) {
+        add(other.values[i]);
+      }
+    }
+
+    public long[] sortedDistinct() {
+      long[] result = Arrays.copyOf(values, size);
+      Arrays.sort(result);
+
+      int distinct = 0;
+      for (int i = 0; i < result.length; i++) {
+        if (i == 0 || result[i] != result[i - 1]) {
+          result[distinct++] = result[i];
+        }
+      }
+
+      return Arrays.copyOf(result, distinct);
+    }
+
+  }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.issue.Issuable.IssueBuilder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.ndepend.NDependMetrics.Phase;
+
+import java.util.List;
+
+public class NDependIssueReporter {
+
+  public static final String RULE_DISABLED = "the rule is disabled in the current quality profile";
+  public static final String FILE_NOT_IMPORTED = "the file is not imported in SonarQube";
+  public static final String NO_ISSUABLE = "no issuable has been found for the file";
+
+  private final NDependActiveRules activeRules;
+  private final NDependFileResolver fileResolver;
+  private final NDependMetrics metrics;
+  private final NDependSkippedIssues skippedIssues = new NDependSkippedIssues();
+
+  public NDependIssueReporter(NDependActiveRules activeRules, NDependFileResolver fileResolver) {
+    this(activeRules, fileResolver, new NDependMetrics());
+  }
+
+  public NDependIssueReporter(NDependActiveRules activeRules, NDependFileResolver fileResolver, NDependMetrics metrics) {
+    this.activeRules = activeRules;
+    this.fileResolver = fileResolver;
+    this.metrics = metrics;
+  }
+
+  public void report(String file, List<NDependViolation> violations) {
+    long start = metrics.start();
+    InputFile inputFile = fileResolver.inputFile(file);
+    Issuable issuable = inputFile == null ? null : fileResolver.issuable(inputFile);
+    metrics.stop(Phase.FILE_RESOLUTION, start);
+
+    start = metrics.start();
+    IssueBuilder builder = null;
+
+    for (NDependViolation violation : violations) {
+      String ruleName = activeRules.name(violation.ruleKey());
+      if (ruleName == null) {
+        skipIssue(RULE_DISABLED, file, violation);
+      } else if (inputFile == null) {
+        skipIssue(FILE_NOT_IMPORTED, file, violation);
+      } else if (issuable == null) {
+        skipIssue(NO_ISSUABLE, file, violation);
+      } else {
+        if (builder == null) {
+          builder = issuable.newIssueBuilder();
+        }
+
+        builder.ruleKey(RuleKey.of(NDependPlugin.REPOSITORY_KEY, violation.ruleKey()));
+        builder.line(violation.line());
+        builder.message(ruleName);
+
+        issuable.addIssue(builder.build());
+        metrics.issueCreated();
+      }
+    }
+    metrics.stop(Phase.ISSUE_PERSISTENCE, start);
+  }
+
+  public NDependSkippedIssues skippedIssues() {
+    return skippedIssues;
+  }
+
+  private void skipIssue(String reason, String file, NDependViolation violation) {
+    metrics.issueSkipped(reason);
+    skippedIssues.record(reason, violation.ruleKey(), file, violation.line());
+  }
+
+}
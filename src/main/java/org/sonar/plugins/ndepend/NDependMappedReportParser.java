@@ -0,0 +1,625 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
+import org.sonar.plugins.ndepend.NDependReportParser.ParseErrorException;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Scans a memory-mapped, UTF-8 encoded report directly over its bytes: only the values of the "File" and "Key"
+ * attributes are decoded, once per distinct value.
+ */
+public class NDependMappedReportParser {
+
+  private static final int NO_LINE = -1;
+
+  private static final byte[] NAME = ascii("Name");
+  private static final byte[] FILE = ascii("File");
+  private static final byte[] LINE = ascii("Line");
+  private static final byte[] KEY = ascii("Key");
+  private static final byte[] RULE_VIOLATED = ascii("RuleViolated");
+
+  private final NDependReportParserCallback callback;
+  private final Set<String> ruleKeys;
+  private final StringCache strings = new StringCache();
+
+  private File file;
+  private ByteBuffer buffer;
+  private int limit;
+  private Set<String> files;
+  private NDependReportIndex.Builder indexBuilder;
+
+  private int[] scopeDepths = new int[16];
+  private String[] scopeFiles = new String[16];
+  private int[] scopeLines = new int[16];
+  private int[] scopeStarts = new int[16];
+  private boolean[] scopeViolations = new boolean[16];
+  private int scopes;
+
+  private int tagStart;
+  private boolean hasName;
+  private int fileStart;
+  private int fileEnd;
+  private int lineStart;
+  private int lineEnd;
+  private int keyStart;
+  private int keyEnd;
+
+  private long bytesRead;
+  private long elements;
+  private long filtered;
+
+  public NDependMappedReportParser(NDependReportParserCallback callback, @Nullable Set<String> ruleKeys) {
+    this.callback = callback;
+    this.ruleKeys = ruleKeys;
+  }
+
+  /**
+   * Gzip compressed, UTF-16 encoded and reports larger than 2GB can only be read by {@link NDependReportParser}.
+   */
+  public static boolean canParse(File file) {
+    if (!file.isFile() || file.length() > Integer.MAX_VALUE) {
+      return false;
+    }
+
+    try {
+      return NDependReportFormat.isPlain(file);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  public void parse(File file) {
+    this.file = file;
+
+    MappedByteBuffer mapped = map(file);
+    try {
+      buffer = mapped;
+      limit = mapped.limit();
+      scan(0);
+      bytesRead += limit;
+    } finally {
+      buffer = null;
+      unmap(mapped);
+    }
+  }
+
+  /**
+   * Only scans the given byte ranges of the report, each of which must hold complete elements, and only reports the
+   * issues of the given files.
+   */
+  public void parse(File file, List<int[]> ranges, Set<String> files) {
+    this.file = file;
+    this.files = files;
+
+    MappedByteBuffer mapped = map(file);
+    try {
+      buffer = mapped;
+      for (int[] range : ranges) {
+        if (range[1] > mapped.limit()) {
+          throw new IllegalStateException("The NDepend report index does not match the report " + file.getAbsolutePath());
+        }
+        limit = range[1];
+        scopes = 0;
+        scan(range[0]);
+        bytesRead += range[1] - range[0];
+      }
+    } finally {
+      buffer = null;
+      unmap(mapped);
+    }
+  }
+
+  void index(File file, NDependReportIndex.Builder builder) {
+    indexBuilder = builder;
+    try {
+      parse(file);
+    } finally {
+      indexBuilder = null;
+    }
+  }
+
+  public long bytesRead() {
+    return bytesRead;
+  }
+
+  public long elementsScanned() {
+    return elements;
+  }
+
+  public long filteredViolations() {
+    return filtered;
+  }
+
+  private static MappedByteBuffer map(File file) {
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, "r");
+      return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      Closeables.closeQuietly(raf);
+    }
+  }
+
+  /**
+   * Releases the mapping right away rather than on garbage collection, which would keep the report locked on Windows.
+   * Java 9 and later only expose the cleaner of the buffer through sun.misc.Unsafe.invokeCleaner(), Java 8 through its
+   * cleaner() method.
+   */
+  private static void unmap(MappedByteBuffer mapped) {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), mapped);
+      return;
+    } catch (Exception e) {
+      // Before Java 9
+    }
+
+    try {
+      Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(mapped);
+      if (cleaner != null) {
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    } catch (Exception e) {
+      // Not supported by this JVM, the mapping will be released on garbage collection
+    }
+  }
+
+  private void scan(int from) {
+    int depth = 0;
+    int pos = from;
+
+    while (true) {
+      pos = indexOf('<', pos);
+      if (pos == -1) {
+        return;
+      }
+      tagStart = pos;
+      pos++;
+
+      byte b = byteAt(pos);
+      if (b == '?') {
+        pos = skipPast("?>", pos);
+      } else if (b == '!') {
+        if (startsWith("!--", pos)) {
+          pos = skipPast("-->", pos + 3);
+        } else if (startsWith("![CDATA[", pos)) {
+          pos = skipPast("]]>", pos + 8);
+        } else {
+          pos = skipPast(">", pos);
+        }
+      } else if (b == '/') {
+        pos = skipPast(">", pos);
+        depth = endElement(depth, pos);
+      } else {
+        elements++;
+        depth++;
+        pos = startElement(pos, depth);
+        if (byteAt(pos - 2) == '/') {
+          depth = endElement(depth, pos);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the attributes of the element whose name starts at the given position, and returns the position following
+   * its start tag.
+   */
+  private int startElement(int nameStart, int depth) {
+    int pos = nameStart;
+    while (!isNameEnd(byteAt(pos))) {
+      pos++;
+    }
+    int nameEnd = pos;
+
+    hasName = false;
+    fileStart = -1;
+    lineStart = -1;
+    keyStart = -1;
+    pos = readAttributes(pos);
+
+    if (hasName) {
+      pushScope(depth);
+    } else if (scopes > 0 && scopeFiles[scopes - 1] != null && scopeLines[scopes - 1] != NO_LINE && localNameEquals(nameStart, nameEnd, RULE_VIOLATED)) {
+      if (keyStart == -1) {
+        throw parseError("Missing attribute \"Key\" in element <" + decode(localNameStart(nameStart, nameEnd), nameEnd) + ">");
+      }
+      scopeViolations[scopes - 1] = true;
+      if (files == null || files.contains(scopeFiles[scopes - 1])) {
+        reportIssue(strings.get(this, keyStart, keyEnd));
+      }
+    }
+
+    return pos;
+  }
+
+  private void reportIssue(String key) {
+    if (ruleKeys == null || ruleKeys.contains(key)) {
+      callback.onIssue(key, scopeFiles[scopes - 1], scopeLines[scopes - 1]);
+    } else {
+      filtered++;
+    }
+  }
+
+  private int readAttributes(int from) {
+    int pos = from;
+    while (true) {
+      byte b = byteAt(pos);
+      if (b == '>') {
+        return pos + 1;
+      } else if (b == '/') {
+        if (byteAt(pos + 1) != '>') {
+          throw parseError("Unexpected character '/' in a start tag");
+        }
+        return pos + 2;
+      } else if (isWhitespace(b)) {
+        pos++;
+      } else {
+        pos = readAttribute(pos);
+      }
+    }
+  }
+
+  private int readAttribute(int nameStart) {
+    int pos = nameStart;
+    while (byteAt(pos) != '=' && !isWhitespace(byteAt(pos))) {
+      pos++;
+    }
+    int nameEnd = pos;
+
+    while (isWhitespace(byteAt(pos))) {
+      pos++;
+    }
+    if (byteAt(pos) != '=') {
+      throw parseError("Expected '=' after the attribute \"" + decode(nameStart, nameEnd) + "\"");
+    }
+    pos++;
+    while (isWhitespace(byteAt(pos))) {
+      pos++;
+    }
+
+    byte quote = byteAt(pos);
+    if (quote != '"' && quote != '\'') {
+      throw parseError("Expected a quoted value for the attribute \"" + decode(nameStart, nameEnd) + "\"");
+    }
+    int valueStart = pos + 1;
+    int valueEnd = indexOf(quote, valueStart);
+    if (valueEnd == -1) {
+      throw unexpectedEnd();
+    }
+
+    if (localNameEquals(nameStart, nameEnd, NAME)) {
+      hasName = true;
+    } else if (localNameEquals(nameStart, nameEnd, FILE)) {
+      fileStart = valueStart;
+      fileEnd = valueEnd;
+    } else if (localNameEquals(nameStart, nameEnd, LINE)) {
+      lineStart = valueStart;
+      lineEnd = valueEnd;
+    } else if (localNameEquals(nameStart, nameEnd, KEY)) {
+      keyStart = valueStart;
+      keyEnd = valueEnd;
+    }
+
+    return valueEnd + 1;
+  }
+
+  private int endElement(int depth, int end) {
+    if (scopes > 0 && scopeDepths[scopes - 1] == depth) {
+      scopes--;
+      if (indexBuilder != null && scopeViolations[scopes]) {
+        indexBuilder.add(scopeFiles[scopes], scopeStarts[scopes], end);
+      }
+    }
+    return depth - 1;
+  }
+
+  private void pushScope(int depth) {
+    if (scopes == scopeDepths.length) {
+      scopeDepths = Arrays.copyOf(scopeDepths, scopes * 2);
+      scopeFiles = Arrays.copyOf(scopeFiles, scopes * 2);
+      scopeLines = Arrays.copyOf(scopeLines, scopes * 2);
+      scopeStarts = Arrays.copyOf(scopeStarts, scopes * 2);
+      scopeViolations = Arrays.copyOf(scopeViolations, scopes * 2);
+    }
+
+    scopeDepths[scopes] = depth;
+    scopeStarts[scopes] = tagStart;
+    scopeViolations[scopes] = false;
+    scopeFiles[scopes] = fileStart == -1 ? null : strings.get(this, fileStart, fileEnd);
+    scopeLines[scopes] = parseLine();
+    scopes++;
+  }
+
+  private int parseLine() {
+    if (lineStart == -1) {
+      return NO_LINE;
+    }
+
+    int length = lineEnd - lineStart;
+    if (length > 0 && length < 10) {
+      int result = 0;
+      int i = lineStart;
+      while (i < lineEnd && buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+        result = result * 10 + buffer.get(i) - '0';
+        i++;
+      }
+      if (i == lineEnd) {
+        return result;
+      }
+    }
+
+    String value = decode(lineStart, lineEnd);
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw parseError("Expected an integer instead of \"" + value + "\" for the attribute \"Line\"");
+    }
+  }
+
+  private boolean localNameEquals(int start, int end, byte[] expected) {
+    int localStart = localNameStart(start, end);
+    if (end - localStart != expected.length) {
+      return false;
+    }
+    for (int i = 0; i < expected.length; i++) {
+      if (buffer.get(localStart + i) != expected[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int localNameStart(int start, int end) {
+    for (int i = end - 1; i >= start; i--) {
+      if (buffer.get(i) == ':') {
+        return i + 1;
+      }
+    }
+    return start;
+  }
+
+  private byte byteAt(int pos) {
+    if (pos >= limit) {
+      throw unexpectedEnd();
+    }
+    return buffer.get(pos);
+  }
+
+  private int indexOf(byte b, int from) {
+    for (int i = from; i < limit; i++) {
+      if (buffer.get(i) == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int indexOf(char c, int from) {
+    return indexOf((byte) c, from);
+  }
+
+  private boolean startsWith(String prefix, int pos) {
+    if (pos + prefix.length() > limit) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (buffer.get(pos + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int skipPast(String terminator, int from) {
+    int pos = from;
+    while (pos < limit) {
+      pos = indexOf(terminator.charAt(0), pos);
+      if (pos == -1) {
+        break;
+      }
+      if (startsWith(terminator, pos)) {
+        return pos + terminator.length();
+      }
+      pos++;
+    }
+    throw unexpectedEnd();
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+  }
+
+  private static boolean isNameEnd(byte b) {
+    return b == '>' || b == '/' || isWhitespace(b);
+  }
+
+  private String decode(int start, int end) {
+    byte[] bytes = new byte[end - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(start + i);
+    }
+    return unescape(new String(bytes, Charsets.UTF_8));
+  }
+
+  private String unescape(String value) {
+    int ampersand = value.indexOf('&');
+    if (ampersand == -1) {
+      return value;
+    }
+
+    StringBuilder sb = new StringBuilder(value.length());
+    int pos = 0;
+    while (ampersand != -1) {
+      int semicolon = value.indexOf(';', ampersand);
+      if (semicolon == -1) {
+        throw parseError("Unterminated entity reference in \"" + value + "\"");
+      }
+      sb.append(value, pos, ampersand);
+      appendEntity(sb, value.substring(ampersand + 1, semicolon));
+      pos = semicolon + 1;
+      ampersand = value.indexOf('&', pos);
+    }
+    sb.append(value, pos, value.length());
+    return sb.toString();
+  }
+
+  private void appendEntity(StringBuilder sb, String entity) {
+    if ("amp".equals(entity)) {
+      sb.append('&');
+    } else if ("lt".equals(entity)) {
+      sb.append('<');
+    } else if ("gt".equals(entity)) {
+      sb.append('>');
+    } else if ("quot".equals(entity)) {
+      sb.append('"');
+    } else if ("apos".equals(entity)) {
+      sb.append('\'');
+    } else if (entity.startsWith("#")) {
+      try {
+        int codePoint = entity.startsWith("#x") ? Integer.parseInt(entity.substring(2), 16) : Integer.parseInt(entity.substring(1));
+        sb.appendCodePoint(codePoint);
+      } catch (IllegalArgumentException e) {
+        throw parseError("Invalid character reference \"&" + entity + ";\"");
+      }
+    } else {
+      throw parseError("Undeclared entity \"&" + entity + ";\"");
+    }
+  }
+
+  private ParseErrorException unexpectedEnd() {
+    return parseError("Unexpected end of file");
+  }
+
+  private ParseErrorException parseError(String message) {
+    int line = 1;
+    for (int i = 0; i < Math.min(tagStart, limit); i++) {
+      if (buffer.get(i) == '\n') {
+        line++;
+      }
+    }
+    return new ParseErrorException(message + " in " + file.getAbsolutePath() + " at line " + line);
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(Charsets.US_ASCII);
+  }
+
+  /**
+   * Maps the raw bytes of attribute values to their decoded strings, so that each distinct value is decoded only once.
+   */
+  private static class StringCache {
+
+    private byte[][] keys = new byte[256][];
+    private String[] values = new String[256];
+    private int size;
+
+    public String get(NDependMappedReportParser parser, int start, int end) {
+      ByteBuffer buffer = parser.buffer;
+      int hash = 1;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + buffer.get(i);
+      }
+
+      int mask = keys.length - 1;
+      int index = mix(hash) & mask;
+      while (keys[index] != null) {
+        if (matches(keys[index], buffer, start, end)) {
+          return values[index];
+        }
+        index = (index + 1) & mask;
+      }
+
+      byte[] key = new byte[end - start];
+      for (int i = 0; i < key.length; i++) {
+        key[i] = buffer.get(start + i);
+      }
+      String value = parser.decode(start, end);
+      keys[index] = key;
+      values[index] = value;
+      size++;
+      if (size * 2 > keys.length) {
+        grow();
+      }
+      return value;
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+      if (key.length != end - start) {
+        return false;
+      }
+      for (int i = 0; i < key.length; i++) {
+        if (key[i] != buffer.get(start + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void grow() {
+      byte[][] oldKeys = keys;
+      String[] oldValues = values;
+      keys = new byte[oldKeys.length * 2][];
+      values = new String[oldValues.length * 2];
+
+      int mask = keys.length - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != null) {
+          int index = mix(Arrays.hashCode(oldKeys[i])) & mask;
+          while (keys[index] != null) {
+            index = (index + 1) & mask;
+          }
+          keys[index] = oldKeys[i];
+          values[index] = oldValues[i];
+        }
+      }
+    }
+
+    private static int mix(int hash) {
+      int h = hash * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+
+  }
+
+}
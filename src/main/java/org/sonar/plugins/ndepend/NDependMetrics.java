@@ -0,0 +1,160 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class NDependMetrics {
+
+  private static final Logger LOG = LoggerFactory.getLogger(NDependMetrics.class);
+
+  public enum Phase {
+    EXECUTION, PARSING, FILE_RESOLUTION, ISSUE_PERSISTENCE
+  }
+
+  private final Map<Phase, AtomicLong> nanosByPhase = Maps.newEnumMap(Phase.class);
+  private final AtomicLong reportBytes = new AtomicLong();
+  private final AtomicLong elementsScanned = new AtomicLong();
+  private final AtomicLong violationsSeen = new AtomicLong();
+  private final AtomicLong issuesCreated = new AtomicLong();
+  private final Map<String, Long> skippedByReason = Maps.newLinkedHashMap();
+
+  public NDependMetrics() {
+    for (Phase phase : Phase.values()) {
+      nanosByPhase.put(phase, new AtomicLong());
+    }
+  }
+
+  public long start() {
+    return System.nanoTime();
+  }
+
+  public void stop(Phase phase, long start) {
+    nanosByPhase.get(phase).addAndGet(System.nanoTime() - start);
+  }
+
+  public void addReportBytes(long bytes) {
+    reportBytes.addAndGet(bytes);
+  }
+
+  public void addElementsScanned(long elements) {
+    elementsScanned.addAndGet(elements);
+  }
+
+  public void addViolationsSeen(long violations) {
+    violationsSeen.addAndGet(violations);
+  }
+
+  public void issueCreated() {
+    issuesCreated.incrementAndGet();
+  }
+
+  public void issueSkipped(String reason) {
+    issuesSkipped(reason, 1);
+  }
+
+  public synchronized void issuesSkipped(String reason, long skipped) {
+    Long count = skippedByReason.get(reason);
+    skippedByReason.put(reason, count == null ? skipped : count + skipped);
+  }
+
+  public long millis(Phase phase) {
+    return TimeUnit.NANOSECONDS.toMillis(nanosByPhase.get(phase).get());
+  }
+
+  public long reportBytes() {
+    return reportBytes.get();
+  }
+
+  public long elementsScanned() {
+    return elementsScanned.get();
+  }
+
+  public long violationsSeen() {
+    return violationsSeen.get();
+  }
+
+  public long issuesCreated() {
+    return issuesCreated.get();
+  }
+
+  public synchronized Map<String, Long> skippedByReason() {
+    return Maps.newLinkedHashMap(skippedByReason);
+  }
+
+  public void logSummary() {
+    StringBuilder sb = new StringBuilder("NDepend analysis:");
+    for (Phase phase : Phase.values()) {
+      sb.append(' ').append(phase.name().toLowerCase(Locale.ENGLISH)).append('=').append(millis(phase)).append("ms");
+    }
+    sb.append(", report bytes read=").append(reportBytes());
+    sb.append(", elements scanned=").append(elementsScanned());
+    sb.append(", violations seen=").append(violationsSeen());
+    sb.append(", issues created=").append(issuesCreated());
+    for (Map.Entry<String, Long> entry : skippedByReason().entrySet()) {
+      sb.append(", skipped because ").append(entry.getKey()).append('=').append(entry.getValue());
+    }
+    LOG.info(sb.toString());
+  }
+
+  public void writeJson(File file) {
+    StringBuilder sb = new StringBuilder("{\n  \"phasesMillis\": {");
+    boolean first = true;
+    for (Phase phase : Phase.values()) {
+      sb.append(first ? "\n" : ",\n").append("    ").append(quote(phase.name().toLowerCase(Locale.ENGLISH))).append(": ").append(millis(phase));
+      first = false;
+    }
+    sb.append("\n  },\n");
+    sb.append("  \"reportBytes\": ").append(reportBytes()).append(",\n");
+    sb.append("  \"elementsScanned\": ").append(elementsScanned()).append(",\n");
+    sb.append("  \"violationsSeen\": ").append(violationsSeen()).append(",\n");
+    sb.append("  \"issuesCreated\": ").append(issuesCreated()).append(",\n");
+    sb.append("  \"skippedByReason\": {");
+    first = true;
+    for (Map.Entry<String, Long> entry : skippedByReason().entrySet()) {
+      sb.append(first ? "\n" : ",\n").append("    ").append(quote(entry.getKey())).append(": ").append(entry.getValue());
+      first = false;
+    }
+    sb.append(first ? "}\n" : "\n  }\n").append("}\n");
+
+    try {
+      Files.write(sb.toString(), file, Charsets.UTF_8);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static String quote(String value) {
+    return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+}
@@ -38,6 +38,18 @@ public class NDependPlugin extends SonarPlugin {
   public static final String RULE_RUNNER_PATH_PROPERTY_KEY = "sonar.cs.ndepend.ruleRunnerPath";
   public static final String NDEPEND_PROJECT_PATH_PROPERTY_KEY = "sonar.cs.ndepend.projectPath";
   public static final String TIMEOUT_PROPERTY_KEY = "sonar.cs.ndepend.timeoutMinutes";
+  public static final String PARSER_THREADS_PROPERTY_KEY = "sonar.cs.ndepend.parserThreads";
+  public static final String CACHE_ENABLED_PROPERTY_KEY = "sonar.cs.ndepend.cacheEnabled";
+  public static final String STREAM_REPORT_PROPERTY_KEY = "sonar.cs.ndepend.streamReport";
+  public static final String COMPRESS_REPORT_PROPERTY_KEY = "sonar.cs.ndepend.compressReport";
+  public static final String DUMP_METRICS_PROPERTY_KEY = "sonar.cs.ndepend.dumpMetrics";
+  public static final String ACTIVE_RULES_ONLY_PROPERTY_KEY = "sonar.cs.ndepend.activeRulesOnly";
+  public static final String CONCURRENT_RUNS_PROPERTY_KEY = "sonar.cs.ndepend.concurrentRuns";
+  public static final String MAX_BUFFERED_VIOLATIONS_PROPERTY_KEY = "sonar.cs.ndepend.maxBufferedViolations";
+  public static final String DAEMON_PROPERTY_KEY = "sonar.cs.ndepend.daemon";
+  public static final String STALL_TIMEOUT_PROPERTY_KEY = "sonar.cs.ndepend.stallTimeoutMinutes";
+  public static final String ADAPTIVE_TIMEOUT_PROPERTY_KEY = "sonar.cs.ndepend.adaptiveTimeout";
+  public static final String MEMORY_MAPPED_REPORT_PROPERTY_KEY = "sonar.cs.ndepend.memoryMappedReport";
 
   private static final String CATEGORY = "NDepend";
 
@@ -48,6 +60,7 @@ public class NDependPlugin extends SonarPlugin {
     builder.add(
       NDependConfiguration.class,
       NDependRulesDefinition.class,
+      NDependReactorAnalysis.class,
       NDependSensor.class);
 
     builder.addAll(pluginProperties());
@@ -82,6 +95,103 @@ public class NDependPlugin extends SonarPlugin {
         .description("Must be an absolute path. Example: C:/project.ndproj")
         .category(CATEGORY)
         .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+      PropertyDefinition.builder(PARSER_THREADS_PROPERTY_KEY)
+        .name("Report parser threads")
+        .description("Number of threads used to parse the assemblies of the NDepend report concurrently. 1 parses the report sequentially.")
+        .defaultValue("1")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(CACHE_ENABLED_PROPERTY_KEY)
+        .name("Reuse unchanged results")
+        .description("Skip NDepend's execution and reuse the issues of the previous analysis when the NDepend project, its assemblies and the rules are unchanged.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(STREAM_REPORT_PROPERTY_KEY)
+        .name("Parse the report while NDepend runs")
+        .description("Parse the NDepend report as it is being written instead of waiting for NDepend's execution to complete.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(COMPRESS_REPORT_PROPERTY_KEY)
+        .name("Compressed NDepend report")
+        .description("Ask NDepend.SonarQube.RuleRunner.exe to write a gzip compressed report, ndepend-report.xml.gz, to reduce disk I/O. "
+          + "The report is still read as plain XML if the rule runner does not compress it.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(DUMP_METRICS_PROPERTY_KEY)
+        .name("Dump analysis metrics")
+        .description("Write the timings and counters of the NDepend analysis to ndepend-metrics.json in the working directory.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(ACTIVE_RULES_ONLY_PROPERTY_KEY)
+        .name("Evaluate active rules only")
+        .description("Pass the rules of the quality profile to NDepend.SonarQube.RuleRunner.exe so that it only evaluates them. Requires a rule runner accepting a rule set file as third argument.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(CONCURRENT_RUNS_PROPERTY_KEY)
+        .name("Concurrent NDepend executions")
+        .description("Maximum number of NDepend project files of the modules analyzed concurrently. Modules sharing the same NDepend project file always share a single execution.")
+        .defaultValue("1")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(MAX_BUFFERED_VIOLATIONS_PROPERTY_KEY)
+        .name("Maximum number of violations kept in memory")
+        .description("Beyond this number, the violations read from the NDepend report are sorted and written to the working directory until they are reported. 0 keeps them all in memory.")
+        .defaultValue("1000000")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(DAEMON_PROPERTY_KEY)
+        .name("Reuse the rule runner process")
+        .description("Start NDepend.SonarQube.RuleRunner.exe once with the --daemon option and send it the analysis of every module on its standard input. Requires a rule runner supporting that option.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(STALL_TIMEOUT_PROPERTY_KEY)
+        .name("NDepend stall timeout")
+        .description("Time in minutes after which NDepend's execution should be interrupted if it neither printed anything nor wrote to its report. 0 to disable.")
+        .defaultValue("0")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.INTEGER)
+        .build(),
+      PropertyDefinition.builder(ADAPTIVE_TIMEOUT_PROPERTY_KEY)
+        .name("Adaptive NDepend execution timeout")
+        .description("Interrupt NDepend's execution after three times its longest recent execution time (and at least one minute), instead of waiting for the full execution timeout.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+      PropertyDefinition.builder(MEMORY_MAPPED_REPORT_PROPERTY_KEY)
+        .name("Memory-mapped report parsing")
+        .description("Scan the bytes of a memory-mapped NDepend report instead of reading it through an XML parser. Ignored for gzip compressed and UTF-16 encoded reports, and when the report is streamed.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
         .build());
   }
 
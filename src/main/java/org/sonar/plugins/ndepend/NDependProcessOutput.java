@@ -0,0 +1,153 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Keeps the last lines printed by NDepend, and forwards them to the log at a bounded rate.
+ */
+public class NDependProcessOutput {
+
+  private static final Logger LOG = LoggerFactory.getLogger(NDependProcessOutput.class);
+
+  private static final int MAX_LINE_LENGTH = 1000;
+  private static final long LOG_WINDOW_MILLIS = 1000;
+
+  private final String[] tail;
+  private final int maxLoggedLinesPerSecond;
+
+  private int tailStart;
+  private int tailSize;
+  private long lines;
+  private long suppressedLines;
+  private long windowStart;
+  private int windowLoggedLines;
+  private int windowSuppressedLines;
+
+  public NDependProcessOutput(int tailLines, int maxLoggedLinesPerSecond) {
+    this.tail = new String[tailLines];
+    this.maxLoggedLinesPerSecond = maxLoggedLinesPerSecond;
+  }
+
+  public void read(InputStream in, boolean error) throws IOException {
+    Reader reader = new InputStreamReader(in, Charsets.UTF_8);
+    try {
+      char[] buffer = new char[8192];
+      StringBuilder line = new StringBuilder();
+      boolean truncated = false;
+      boolean pendingCarriageReturn = false;
+      int read;
+      while ((read = reader.read(buffer)) != -1) {
+        for (int i = 0; i < read; i++) {
+          char c = buffer[i];
+          if (c == '\n' || c == '\r') {
+            if (c == '\r' || !pendingCarriageReturn) {
+              line(truncated ? line.append("...").toString() : line.toString(), error);
+              line.setLength(0);
+              truncated = false;
+            }
+            pendingCarriageReturn = c == '\r';
+          } else {
+            pendingCarriageReturn = false;
+            if (line.length() < MAX_LINE_LENGTH) {
+              line.append(c);
+            } else {
+              truncated = true;
+            }
+          }
+        }
+      }
+      if (line.length() > 0) {
+        line(truncated ? line.append("...").toString() : line.toString(), error);
+      }
+    } finally {
+      Closeables.closeQuietly(reader);
+    }
+  }
+
+  synchronized void line(String line, boolean error) {
+    lines++;
+    if (tail.length > 0) {
+      tail[(tailStart + tailSize) % tail.length] = line;
+      if (tailSize < tail.length) {
+        tailSize++;
+      } else {
+        tailStart = (tailStart + 1) % tail.length;
+      }
+    }
+
+    long now = System.currentTimeMillis();
+    if (now - windowStart >= LOG_WINDOW_MILLIS) {
+      logSuppressedLines();
+      windowStart = now;
+      windowLoggedLines = 0;
+    }
+    if (windowLoggedLines < maxLoggedLinesPerSecond) {
+      windowLoggedLines++;
+      if (error) {
+        LOG.warn(line);
+      } else {
+        LOG.info(line);
+      }
+    } else {
+      windowSuppressedLines++;
+      suppressedLines++;
+    }
+  }
+
+  public synchronized void flush() {
+    logSuppressedLines();
+  }
+
+  private void logSuppressedLines() {
+    if (windowSuppressedLines > 0) {
+      LOG.info("[" + windowSuppressedLines + " lines of NDepend output not logged]");
+      windowSuppressedLines = 0;
+    }
+  }
+
+  public synchronized long lines() {
+    return lines;
+  }
+
+  public synchronized long suppressedLines() {
+    return suppressedLines;
+  }
+
+  public synchronized List<String> tail() {
+    List<String> result = Lists.newArrayListWithCapacity(tailSize);
+    for (int i = 0; i < tailSize; i++) {
+      result.add(tail[(tailStart + i) % tail.length]);
+    }
+    return result;
+  }
+
+}
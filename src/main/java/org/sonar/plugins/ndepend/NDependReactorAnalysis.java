@@ -0,0 +1,281 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.config.Settings;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class NDependReactorAnalysis implements BatchExtension {
+
+  private static final Logger LOG = LoggerFactory.getLogger(NDependReactorAnalysis.class);
+
+  private static final String FILE_SUFFIXES_PROPERTY_KEY = "sonar.cs.file.suffixes";
+  private static final String DEFAULT_FILE_SUFFIX = ".cs";
+
+  private final Settings settings;
+  private final ProjectReactor reactor;
+  private final Map<String, Future<File>> reports = Maps.newHashMap();
+  private final Map<String, Integer> consumers = Maps.newHashMap();
+  private ExecutorService pool;
+  private NDependDaemonExecutor daemonExecutor;
+
+  public NDependReactorAnalysis(Settings settings, ProjectReactor reactor) {
+    this.settings = settings;
+    this.reactor = reactor;
+  }
+
+  public NDependExecutor executor(NDependConfiguration conf) {
+    if (conf.daemon()) {
+      return daemonExecutor();
+    }
+    return new NDependExecutor(TimeUnit.MINUTES.toMillis(conf.stallTimeout()), conf.adaptiveTimeout());
+  }
+
+  /**
+   * Report of the NDepend project of a module, written to its work directory unless the project is already analyzed for another module.
+   */
+  public File report(NDependExecutor executor, NDependConfiguration conf, File workDir, Set<String> activeRuleKeys) {
+    Future<File> report;
+    synchronized (this) {
+      boolean started = start();
+      report = submit(executor, conf, workDir, activeRuleKeys);
+      if (started) {
+        mapModules(activeRuleKeys);
+      }
+    }
+
+    try {
+      return report.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Run of the NDepend project of a module that streams its report, to be executed by the caller while it reads the report.
+   * Returns null when the project is already analyzed for another module: its report must then be obtained through
+   * {@link #report(NDependExecutor, NDependConfiguration, File, Set)}.
+   */
+  @CheckForNull
+  public synchronized FutureTask<File> streamedRun(NDependExecutor executor, NDependConfiguration conf, File workDir, Set<String> activeRuleKeys) {
+    boolean started = start();
+    FutureTask<File> run = null;
+    String key = key(conf.ndependProjectPath());
+    if (!reports.containsKey(key)) {
+      LOG.info("Scheduling the NDepend analysis of " + conf.ndependProjectPath());
+      run = new FutureTask<File>(run(executor, conf, workDir, activeRuleKeys));
+      reports.put(key, run);
+    }
+    if (started) {
+      mapModules(activeRuleKeys);
+    }
+    return run;
+  }
+
+  private boolean start() {
+    if (pool != null) {
+      return false;
+    }
+    pool = Executors.newFixedThreadPool(Math.max(1, new NDependConfiguration(settings).concurrentRuns()));
+    return true;
+  }
+
+  /**
+   * Counts the modules reading the report of each NDepend project, and schedules their runs when several projects may run at
+   * once. Modules streaming their report run their project themselves, and the project of a module with cached results may not
+   * need to run at all.
+   */
+  private void mapModules(Set<String> activeRuleKeys) {
+    boolean concurrent = new NDependConfiguration(settings).concurrentRuns() > 1;
+
+    for (ProjectDefinition module : reactor.getProjects()) {
+      Settings moduleSettings = moduleSettings(module);
+      NDependConfiguration moduleConf = new NDependConfiguration(moduleSettings);
+      String ndependProjectPath = moduleSettings.getString(NDependPlugin.NDEPEND_PROJECT_PATH_PROPERTY_KEY);
+      if (ndependProjectPath != null && new File(ndependProjectPath).isFile() && module.getWorkDir() != null
+        && !moduleConf.streamReport() && !moduleConf.cacheEnabled() && hasFilesToAnalyze(module, moduleSettings)) {
+        String key = key(ndependProjectPath);
+        Integer count = consumers.get(key);
+        consumers.put(key, count == null ? 1 : (count + 1));
+
+        if (concurrent && !reports.containsKey(key)) {
+          submit(executor(moduleConf), moduleConf, module.getWorkDir(), activeRuleKeys);
+        }
+      }
+    }
+  }
+
+  private Settings moduleSettings(ProjectDefinition module) {
+    List<ProjectDefinition> modules = Lists.newArrayList();
+    for (ProjectDefinition current = module; current != null; current = current.getParent()) {
+      modules.add(0, current);
+    }
+
+    Settings moduleSettings = new Settings(settings);
+    for (ProjectDefinition current : modules) {
+      moduleSettings.addProperties(current.getProperties());
+    }
+    return moduleSettings;
+  }
+
+  private static boolean hasFilesToAnalyze(ProjectDefinition module, Settings moduleSettings) {
+    String[] suffixes = moduleSettings.getStringArray(FILE_SUFFIXES_PROPERTY_KEY);
+    if (suffixes.length == 0) {
+      suffixes = new String[] {DEFAULT_FILE_SUFFIX};
+    }
+
+    for (String source : module.sources()) {
+      File file = new File(source);
+      if (!file.isAbsolute() && module.getBaseDir() != null) {
+        file = new File(module.getBaseDir(), source);
+      }
+      if (containsFile(file, suffixes)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean containsFile(File file, String[] suffixes) {
+    if (file.isFile()) {
+      String name = file.getName().toLowerCase(Locale.ENGLISH);
+      for (String suffix : suffixes) {
+        if (name.endsWith(suffix.trim().toLowerCase(Locale.ENGLISH))) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        if (containsFile(child, suffixes)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private Future<File> submit(NDependExecutor executor, NDependConfiguration conf, File workDir, Set<String> activeRuleKeys) {
+    String ndependProjectPath = conf.ndependProjectPath();
+    String key = key(ndependProjectPath);
+    Future<File> report = reports.get(key);
+
+    if (report == null) {
+      LOG.info("Scheduling the NDepend analysis of " + ndependProjectPath);
+      report = pool.submit(run(executor, conf, workDir, activeRuleKeys));
+      reports.put(key, report);
+    } else {
+      LOG.info("Reusing the NDepend analysis of " + ndependProjectPath + " shared with another module.");
+    }
+
+    return report;
+  }
+
+  private static Callable<File> run(final NDependExecutor executor, final NDependConfiguration conf, final File workDir, final Set<String> activeRuleKeys) {
+    return new Callable<File>() {
+      @Override
+      public File call() {
+        File reportFile = new File(workDir, conf.reportFileName());
+        workDir.mkdirs();
+        File ruleSetFile = conf.activeRulesOnly() ? writeRuleSet(conf.rules(), activeRuleKeys, workDir) : null;
+        executor.execute(conf.ruleRunnerPath(), conf.ndependProjectPath(), reportFile, ruleSetFile, conf.timeout());
+        return reportFile;
+      }
+    };
+  }
+
+  @Nullable
+  private static File writeRuleSet(String rules, Set<String> activeRuleKeys, File workDir) {
+    if (rules.isEmpty()) {
+      LOG.warn("No NDepend rules defined, NDepend will evaluate all of its rules.");
+      return null;
+    }
+
+    File ruleSetFile = new File(workDir, "ndepend-rules.xml");
+    int written = NDependRuleSetWriter.write(rules, activeRuleKeys, ruleSetFile);
+    LOG.info("NDepend will only evaluate the " + written + " rules active in the quality profile.");
+    return ruleSetFile;
+  }
+
+  private static String key(String ndependProjectPath) {
+    return new File(ndependProjectPath).getAbsolutePath();
+  }
+
+  public synchronized NDependDaemonExecutor daemonExecutor() {
+    if (daemonExecutor == null) {
+      NDependConfiguration conf = new NDependConfiguration(settings);
+      if (conf.concurrentRuns() > 1) {
+        LOG.info("The NDepend daemon analyzes one project at a time, the projects of the modules will not be analyzed concurrently.");
+      }
+      daemonExecutor = new NDependDaemonExecutor(TimeUnit.MINUTES.toMillis(conf.stallTimeout()), conf.adaptiveTimeout());
+    }
+    return daemonExecutor;
+  }
+
+  /**
+   * Number of modules reading the report of the given NDepend project through
+   * {@link #report(NDependExecutor, NDependConfiguration, File, Set)}, including the caller.
+   */
+  public synchronized int consumers(String ndependProjectPath) {
+    Integer count = consumers.get(key(ndependProjectPath));
+    return count == null ? 0 : count;
+  }
+
+  public synchronized void stop() {
+    if (pool != null) {
+      pool.shutdownNow();
+    }
+    if (daemonExecutor != null) {
+      daemonExecutor.stop();
+    }
+  }
+
+}
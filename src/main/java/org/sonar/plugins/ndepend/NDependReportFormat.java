@@ -0,0 +1,84 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.io.Closeables;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Detects gzip compressed and UTF-16 encoded reports from their first two bytes.
+ */
+public final class NDependReportFormat {
+
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int UTF16_BIG_ENDIAN_BOM = 0xfffe;
+  private static final int UTF16_LITTLE_ENDIAN_BOM = 0xfeff;
+
+  private NDependReportFormat() {
+  }
+
+  public static boolean isGzip(File file) throws IOException {
+    return magic(file) == GZIP_MAGIC;
+  }
+
+  /**
+   * Whether the report is stored as plain UTF-8 (or ASCII) bytes, so that it can be scanned without decoding.
+   */
+  public static boolean isPlain(File file) throws IOException {
+    int magic = magic(file);
+    return magic != GZIP_MAGIC && magic != UTF16_BIG_ENDIAN_BOM && magic != UTF16_LITTLE_ENDIAN_BOM;
+  }
+
+  /**
+   * Wraps the given stream, which must support {@link InputStream#mark(int)}, into a {@link GZIPInputStream} if it is
+   * compressed. The stream is closed on failure.
+   */
+  public static InputStream decompressIfNeeded(InputStream in, int bufferSize) throws IOException {
+    try {
+      in.mark(2);
+      int magic = magic(in);
+      in.reset();
+
+      return magic == GZIP_MAGIC ? new GZIPInputStream(in, bufferSize) : in;
+    } catch (IOException e) {
+      Closeables.closeQuietly(in);
+      throw e;
+    }
+  }
+
+  private static int magic(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      return magic(in);
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  private static int magic(InputStream in) throws IOException {
+    return in.read() | (in.read() << 8);
+  }
+
+}
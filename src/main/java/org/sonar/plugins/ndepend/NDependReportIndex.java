@@ -0,0 +1,263 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Byte ranges of the report scopes holding the violations of each file, stored next to the report.
+ */
+public class NDependReportIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(NDependReportIndex.class);
+
+  private static final int MAGIC = 0x4E444959;
+  private static final int CHECKSUM_BYTES = 64 * 1024;
+
+  private final Map<String, int[]> rangesByFile;
+
+  private NDependReportIndex(Map<String, int[]> rangesByFile) {
+    this.rangesByFile = rangesByFile;
+  }
+
+  public static File indexFile(File report) {
+    return new File(report.getAbsoluteFile().getParentFile(), report.getName() + ".idx");
+  }
+
+  /**
+   * Loads the index of the given report, building and saving it when missing or built for another version of the report.
+   */
+  public static NDependReportIndex forReport(File report) {
+    NDependReportIndex index = load(report);
+    if (index == null) {
+      index = build(report);
+      index.save(report);
+    }
+    return index;
+  }
+
+  public static NDependReportIndex build(File report) {
+    Builder builder = new Builder();
+    new NDependMappedReportParser(new NDependReportParserCallback() {
+      @Override
+      public void onIssue(String ruleKey, String file, int line) {
+        // Only the scopes are of interest
+      }
+    }, null).index(report, builder);
+    return builder.build();
+  }
+
+  @CheckForNull
+  public static NDependReportIndex load(File report) {
+    File file = indexFile(report);
+    if (!file.isFile()) {
+      return null;
+    }
+
+    long length = file.length();
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (in.readInt() != MAGIC || in.readLong() != report.length() || in.readLong() != report.lastModified() || in.readLong() != checksum(report)) {
+        return null;
+      }
+
+      int count = checkCount(in.readInt(), length);
+      ImmutableMap.Builder<String, int[]> rangesByFile = ImmutableMap.builder();
+      for (int i = 0; i < count; i++) {
+        byte[] path = new byte[checkCount(in.readInt(), length)];
+        in.readFully(path);
+        int[] ranges = new int[checkCount(in.readInt(), length / 8) * 2];
+        for (int j = 0; j < ranges.length; j += 2) {
+          ranges[j] = in.readInt();
+          ranges[j + 1] = ranges[j] + in.readInt();
+        }
+        rangesByFile.put(new String(path, Charsets.UTF_8), ranges);
+      }
+      return new NDependReportIndex(rangesByFile.build());
+    } catch (IOException e) {
+      LOG.debug("Unable to read the NDepend report index " + file.getAbsolutePath(), e);
+      return null;
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  public void save(File report) {
+    File file = indexFile(report);
+    DataOutputStream out = null;
+    try {
+      File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+      out.writeInt(MAGIC);
+      out.writeLong(report.length());
+      out.writeLong(report.lastModified());
+      out.writeLong(checksum(report));
+      out.writeInt(rangesByFile.size());
+      for (Map.Entry<String, int[]> entry : rangesByFile.entrySet()) {
+        byte[] path = entry.getKey().getBytes(Charsets.UTF_8);
+        out.writeInt(path.length);
+        out.write(path);
+        int[] ranges = entry.getValue();
+        out.writeInt(ranges.length / 2);
+        for (int i = 0; i < ranges.length; i += 2) {
+          out.writeInt(ranges[i]);
+          out.writeInt(ranges[i + 1] - ranges[i]);
+        }
+      }
+      out.close();
+
+      file.delete();
+      if (!tmp.renameTo(file)) {
+        tmp.delete();
+      }
+    } catch (IOException e) {
+      LOG.debug("Unable to write the NDepend report index " + file.getAbsolutePath(), e);
+    } finally {
+      Closeables.closeQuietly(out);
+    }
+  }
+
+  private static int checkCount(int count, long max) throws IOException {
+    if (count < 0 || count > max) {
+      throw new IOException("Invalid count: " + count);
+    }
+    return count;
+  }
+
+  /**
+   * CRC32 of the first and last bytes of the report, which hold its header and the end of its last scopes: a report
+   * rewritten with the same length within the timestamp resolution of the file system is still detected.
+   */
+  private static long checksum(File report) throws IOException {
+    CRC32 crc = new CRC32();
+    RandomAccessFile in = new RandomAccessFile(report, "r");
+    try {
+      long length = in.length();
+      byte[] buffer = new byte[(int) Math.min(length, CHECKSUM_BYTES)];
+      in.readFully(buffer);
+      crc.update(buffer);
+      if (length > buffer.length) {
+        buffer = new byte[(int) Math.min(length - buffer.length, CHECKSUM_BYTES)];
+        in.seek(length - buffer.length);
+        in.readFully(buffer);
+        crc.update(buffer);
+      }
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+    return crc.getValue();
+  }
+
+  public Set<String> files() {
+    return rangesByFile.keySet();
+  }
+
+  /**
+   * Sorted {start, end} byte ranges to scan for the violations of the given files. Ranges nested in another one are
+   * dropped, as scanning the outer range already reports them.
+   */
+  public List<int[]> ranges(Collection<String> files) {
+    int count = 0;
+    for (String file : files) {
+      int[] ranges = rangesByFile.get(file);
+      count += ranges == null ? 0 : ranges.length / 2;
+    }
+
+    long[] sorted = new long[count];
+    int i = 0;
+    for (String file : files) {
+      int[] ranges = rangesByFile.get(file);
+      if (ranges != null) {
+        for (int j = 0; j < ranges.length; j += 2) {
+          sorted[i++] = ((long) ranges[j] << 32) | ranges[j + 1];
+        }
+      }
+    }
+    Arrays.sort(sorted);
+
+    List<int[]> result = Lists.newArrayList();
+    int end = 0;
+    for (long range : sorted) {
+      int rangeStart = (int) (range >>> 32);
+      int rangeEnd = (int) range;
+      if (rangeStart >= end) {
+        result.add(new int[] {rangeStart, rangeEnd});
+        end = rangeEnd;
+      }
+    }
+    return result;
+  }
+
+  static class Builder {
+
+    private final Map<String, int[]> ranges = Maps.newLinkedHashMap();
+    private final Map<String, Integer> sizes = Maps.newHashMap();
+
+    public void add(String file, int start, int end) {
+      int[] fileRanges = ranges.get(file);
+      Integer size = sizes.get(file);
+      if (fileRanges == null) {
+        fileRanges = new int[4];
+        size = 0;
+      } else if (size == fileRanges.length) {
+        fileRanges = Arrays.copyOf(fileRanges, size * 2);
+      }
+      fileRanges[size] = start;
+      fileRanges[size + 1] = end;
+      ranges.put(file, fileRanges);
+      sizes.put(file, size + 2);
+    }
+
+    public NDependReportIndex build() {
+      ImmutableMap.Builder<String, int[]> result = ImmutableMap.builder();
+      for (Map.Entry<String, int[]> entry : ranges.entrySet()) {
+        result.put(entry.getKey(), Arrays.copyOf(entry.getValue(), sizes.get(entry.getKey())));
+      }
+      return new NDependReportIndex(result.build());
+    }
+
+  }
+
+}
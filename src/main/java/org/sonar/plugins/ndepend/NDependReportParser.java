@@ -20,91 +20,376 @@
 package org.sonar.plugins.ndepend;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.Closeables;
+import com.google.common.io.CountingInputStream;
+import org.sonar.plugins.ndepend.NDependReportSplitter.Chunk;
 
 import javax.annotation.Nullable;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class NDependReportParser {
 
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
   private final NDependReportParserCallback callback;
+  private final int bufferSize;
+  private final int threads;
+  private final Set<String> ruleKeys;
+  private final boolean memoryMapped;
+  private final AtomicLong filteredViolations = new AtomicLong();
+  private final AtomicLong bytesRead = new AtomicLong();
+  private final AtomicLong elementsScanned = new AtomicLong();
 
   public NDependReportParser(NDependReportParserCallback callback) {
+    this(callback, DEFAULT_BUFFER_SIZE);
+  }
+
+  public NDependReportParser(NDependReportParserCallback callback, int bufferSize) {
+    this(callback, bufferSize, 1);
+  }
+
+  public NDependReportParser(NDependReportParserCallback callback, int bufferSize, int threads) {
+    this(callback, bufferSize, threads, null);
+  }
+
+  public NDependReportParser(NDependReportParserCallback callback, int bufferSize, int threads, @Nullable Set<String> ruleKeys) {
+    this(callback, bufferSize, threads, ruleKeys, false);
+  }
+
+  public NDependReportParser(NDependReportParserCallback callback, int bufferSize, int threads, @Nullable Set<String> ruleKeys, boolean memoryMapped) {
     this.callback = callback;
+    this.bufferSize = bufferSize;
+    this.threads = threads;
+    this.ruleKeys = ruleKeys;
+    this.memoryMapped = memoryMapped;
   }
 
   public void parse(File file) {
-    new Parser(callback).parse(file);
+    if (memoryMapped && NDependMappedReportParser.canParse(file)) {
+      parseMapped(file);
+      return;
+    }
+
+    if (threads > 1) {
+      List<Chunk> chunks = split(file);
+      if (chunks.size() > 1) {
+        parseInParallel(file, chunks);
+        return;
+      }
+    }
+
+    try {
+      new Parser(callback, this).parse(file, openReport(file, bufferSize), 0);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Parses a report read from the given stream, {@code file} is only used in error messages.
+   */
+  public void parse(File file, InputStream in) {
+    try {
+      new Parser(callback, this).parse(file, NDependReportFormat.decompressIfNeeded(new BufferedInputStream(in, bufferSize), bufferSize), 0);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Only reports the issues of the given files, as named in the report, by scanning the byte ranges listed in its
+   * {@link NDependReportIndex}. The index is built on first use.
+   */
+  public void parse(File file, Set<String> files) {
+    parse(file, files, Functions.<String>identity());
+  }
+
+  /**
+   * Same as {@link #parse(File, Set)}, for files named as normalized by the given function. Reports which cannot be
+   * indexed, such as compressed ones, are fully read and their issues filtered.
+   */
+  public void parse(File file, final Set<String> files, final Function<String, String> normalizer) {
+    if (!NDependMappedReportParser.canParse(file)) {
+      NDependReportParser parser = new NDependReportParser(new NDependReportParserCallback() {
+        @Override
+        public void onIssue(String ruleKey, String issueFile, int line) {
+          if (files.contains(normalizer.apply(issueFile))) {
+            callback.onIssue(ruleKey, issueFile, line);
+          }
+        }
+      }, bufferSize, threads, ruleKeys);
+      try {
+        parser.parse(file);
+      } finally {
+        bytesRead.addAndGet(parser.bytesRead());
+        elementsScanned.addAndGet(parser.elementsScanned());
+        filteredViolations.addAndGet(parser.filteredViolations());
+      }
+      return;
+    }
+
+    NDependReportIndex index = NDependReportIndex.forReport(file);
+    Set<String> reportFiles = Sets.newHashSet();
+    for (String reportFile : index.files()) {
+      if (files.contains(normalizer.apply(reportFile))) {
+        reportFiles.add(reportFile);
+      }
+    }
+
+    NDependMappedReportParser parser = new NDependMappedReportParser(callback, ruleKeys);
+    try {
+      parser.parse(file, index.ranges(reportFiles), reportFiles);
+    } finally {
+      addCounters(parser);
+    }
+  }
+
+  public long bytesRead() {
+    return bytesRead.get();
+  }
+
+  public long elementsScanned() {
+    return elementsScanned.get();
+  }
+
+  public long filteredViolations() {
+    return filteredViolations.get();
+  }
+
+  private void parseMapped(File file) {
+    NDependMappedReportParser parser = new NDependMappedReportParser(callback, ruleKeys);
+    try {
+      parser.parse(file);
+    } finally {
+      addCounters(parser);
+    }
+  }
+
+  private void addCounters(NDependMappedReportParser parser) {
+    bytesRead.addAndGet(parser.bytesRead());
+    elementsScanned.addAndGet(parser.elementsScanned());
+    filteredViolations.addAndGet(parser.filteredViolations());
+  }
+
+  private List<Chunk> split(File file) {
+    try {
+      return NDependReportFormat.isGzip(file) ? ImmutableList.<Chunk>of() : NDependReportSplitter.split(file, bufferSize);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Chunks are parsed at most twice as many as threads ahead of the one being replayed, so that the issues recorded in memory
+   * are bounded by the size of a few assemblies rather than by the size of the report.
+   */
+  private void parseInParallel(File file, List<Chunk> chunks) {
+    int poolSize = Math.min(threads, chunks.size());
+    ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+
+    try {
+      Deque<Future<RecordedIssues>> inFlight = new ArrayDeque<Future<RecordedIssues>>();
+      Iterator<Chunk> remaining = chunks.iterator();
+      while (remaining.hasNext() || !inFlight.isEmpty()) {
+        while (remaining.hasNext() && inFlight.size() < 2 * poolSize) {
+          inFlight.add(executor.submit(parseChunk(file, remaining.next())));
+        }
+        inFlight.removeFirst().get().replayTo(callback);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Callable<RecordedIssues> parseChunk(final File file, final Chunk chunk) {
+    return new Callable<RecordedIssues>() {
+      @Override
+      public RecordedIssues call() throws IOException {
+        RecordedIssues issues = new RecordedIssues();
+        new Parser(issues, NDependReportParser.this).parse(file, chunk.open(file), chunk.firstLine() - 1);
+        return issues;
+      }
+    };
+  }
+
+  static InputStream openReport(File file, int bufferSize) throws IOException {
+    return NDependReportFormat.decompressIfNeeded(new BufferedInputStream(new FileInputStream(file), bufferSize), bufferSize);
   }
 
   private static class Parser {
 
+    private static final int NO_LINE = -1;
+
     private final NDependReportParserCallback callback;
+    private final NDependReportParser counters;
+    private final Map<String, String> strings = Maps.newHashMap();
     private File file;
+    private int lineOffset;
     private XMLStreamReader stream;
 
-    public Parser(NDependReportParserCallback callback) {
+    private int[] scopeDepths = new int[16];
+    private String[] scopeFiles = new String[16];
+    private int[] scopeLines = new int[16];
+    private int scopes;
+
+    private String elementName;
+    private String elementFile;
+    private String elementLine;
+    private String elementKey;
+
+    private long elements;
+    private long filtered;
+
+    public Parser(NDependReportParserCallback callback, NDependReportParser counters) {
       this.callback = callback;
+      this.counters = counters;
     }
 
-    public void parse(File file) {
+    public void parse(File file, InputStream in, int lineOffset) {
       this.file = file;
+      this.lineOffset = lineOffset;
 
       InputStreamReader reader = null;
-      XMLInputFactory xmlFactory = XMLInputFactory.newInstance();
+      CountingInputStream countingIn = new CountingInputStream(in);
 
       try {
-        reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8);
-        stream = xmlFactory.createXMLStreamReader(reader);
+        reader = new InputStreamReader(countingIn, Charsets.UTF_8);
+        stream = NDependXmlFactory.inputFactory().createXMLStreamReader(reader);
 
-        while (stream.hasNext()) {
-          if (stream.next() == XMLStreamConstants.START_ELEMENT && getAttribute("Name") != null) {
-            handleScope();
-          }
-        }
-      } catch (IOException e) {
-        throw Throwables.propagate(e);
+        handleElements();
       } catch (XMLStreamException e) {
         throw Throwables.propagate(e);
       } finally {
         closeXmlStream();
         Closeables.closeQuietly(reader);
+        Closeables.closeQuietly(in);
+        counters.bytesRead.addAndGet(countingIn.getCount());
+        counters.elementsScanned.addAndGet(elements);
+        counters.filteredViolations.addAndGet(filtered);
       }
     }
 
-    private void handleScope() throws XMLStreamException {
-      String tagName = stream.getLocalName();
-
-      String currentFile = getAttribute("File");
-      Integer currentLine = getIntAttribute("Line");
+    private void handleElements() throws XMLStreamException {
+      int depth = 0;
 
       while (stream.hasNext()) {
         int next = stream.next();
 
-        if (next == XMLStreamConstants.END_ELEMENT && tagName.equals(stream.getLocalName())) {
-          break;
-        } else if (next == XMLStreamConstants.START_ELEMENT) {
-          if (getAttribute("Name") != null) {
-            handleScope();
+        if (next == XMLStreamConstants.START_ELEMENT) {
+          elements++;
+          depth++;
+          readAttributes();
+
+          if (elementName != null) {
+            pushScope(depth);
+          } else if (scopes > 0 && scopeFiles[scopes - 1] != null && scopeLines[scopes - 1] != NO_LINE && "RuleViolated".equals(stream.getLocalName())) {
+            if (elementKey == null) {
+              throw parseError("Missing attribute \"Key\" in element <" + stream.getLocalName() + ">");
+            }
+            if (counters.ruleKeys == null || counters.ruleKeys.contains(elementKey)) {
+              callback.onIssue(intern(elementKey), scopeFiles[scopes - 1], scopeLines[scopes - 1]);
+            } else {
+              filtered++;
+            }
           }
-
-          if (currentFile != null && currentLine != null && "RuleViolated".equals(stream.getLocalName())) {
-            String key = getRequiredAttribute("Key");
-            callback.onIssue(key, currentFile, currentLine);
+        } else if (next == XMLStreamConstants.END_ELEMENT) {
+          if (scopes > 0 && scopeDepths[scopes - 1] == depth) {
+            scopes--;
           }
+          depth--;
         }
       }
     }
 
+    private void pushScope(int depth) {
+      if (scopes == scopeDepths.length) {
+        scopeDepths = Arrays.copyOf(scopeDepths, scopes * 2);
+        scopeFiles = Arrays.copyOf(scopeFiles, scopes * 2);
+        scopeLines = Arrays.copyOf(scopeLines, scopes * 2);
+      }
+
+      scopeDepths[scopes] = depth;
+      scopeFiles[scopes] = elementFile == null ? null : intern(elementFile);
+      scopeLines[scopes] = parseLine();
+      scopes++;
+    }
+
+    private void readAttributes() {
+      elementName = null;
+      elementFile = null;
+      elementLine = null;
+      elementKey = null;
+
+      for (int i = 0; i < stream.getAttributeCount(); i++) {
+        String name = stream.getAttributeLocalName(i);
+
+        if ("Name".equals(name)) {
+          elementName = stream.getAttributeValue(i);
+        } else if ("File".equals(name)) {
+          elementFile = stream.getAttributeValue(i);
+        } else if ("Line".equals(name)) {
+          elementLine = stream.getAttributeValue(i);
+        } else if ("Key".equals(name)) {
+          elementKey = stream.getAttributeValue(i);
+        }
+      }
+    }
+
+    private int parseLine() {
+      if (elementLine == null) {
+        return NO_LINE;
+      }
+
+      try {
+        return Integer.parseInt(elementLine);
+      } catch (NumberFormatException e) {
+        throw parseError("Expected an integer instead of \"" + elementLine + "\" for the attribute \"Line\"");
+      }
+    }
+
+    private String intern(String value) {
+      String result = strings.get(value);
+      if (result == null) {
+        strings.put(value, value);
+        result = value;
+      }
+      return result;
+    }
+
     private void closeXmlStream() {
       if (stream != null) {
         try {
@@ -115,48 +400,39 @@ public class NDependReportParser {
       }
     }
 
-    private String getRequiredAttribute(String name) {
-      String value = getAttribute(name);
-      if (value == null) {
-        throw parseError("Missing attribute \"" + name + "\" in element <" + stream.getLocalName() + ">");
-      }
-
-      return value;
+    private ParseErrorException parseError(String message) {
+      return new ParseErrorException(message + " in " + file.getAbsolutePath() + " at line " + (lineOffset + stream.getLocation().getLineNumber()));
     }
 
-    @Nullable
-    private Integer getIntAttribute(String name) {
-      String value = getAttribute(name);
+  }
 
-      if (value == null) {
-        return null;
-      }
+  private static class RecordedIssues implements NDependReportParserCallback {
 
-      try {
-        return Integer.parseInt(value);
-      } catch (NumberFormatException e) {
-        throw parseError("Expected an integer instead of \"" + value + "\" for the attribute \"" + name + "\"");
-      }
-    }
+    private final List<String> ruleKeys = Lists.newArrayList();
+    private final List<String> files = Lists.newArrayList();
+    private int[] lines = new int[16];
 
-    @Nullable
-    private String getAttribute(String name) {
-      for (int i = 0; i < stream.getAttributeCount(); i++) {
-        if (name.equals(stream.getAttributeLocalName(i))) {
-          return stream.getAttributeValue(i);
-        }
+    @Override
+    public void onIssue(String ruleKey, String file, int line) {
+      int index = ruleKeys.size();
+      if (index == lines.length) {
+        lines = Arrays.copyOf(lines, index * 2);
       }
 
-      return null;
+      ruleKeys.add(ruleKey);
+      files.add(file);
+      lines[index] = line;
     }
 
-    private ParseErrorException parseError(String message) {
-      return new ParseErrorException(message + " in " + file.getAbsolutePath() + " at line " + stream.getLocation().getLineNumber());
+    public void replayTo(NDependReportParserCallback callback) {
+      for (int i = 0; i < ruleKeys.size(); i++) {
+        callback.onIssue(ruleKeys.get(i), files.get(i), lines[i]);
+      }
     }
 
   }
 
-  private static class ParseErrorException extends RuntimeException {
+  static class ParseErrorException extends RuntimeException {
 
     private static final long serialVersionUID = 1L;
 
@@ -0,0 +1,219 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closeables;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+public class NDependReportSplitter {
+
+  private static final byte[] OPEN_TAG = "<Assembly".getBytes(Charsets.US_ASCII);
+  private static final byte[] CLOSE_TAG = "</Assembly>".getBytes(Charsets.US_ASCII);
+  private static final byte[] COMMENT_START = "<!--".getBytes(Charsets.US_ASCII);
+  private static final byte[] COMMENT_END = "-->".getBytes(Charsets.US_ASCII);
+  private static final byte[] CDATA_START = "<![CDATA[".getBytes(Charsets.US_ASCII);
+  private static final byte[] CDATA_END = "]]>".getBytes(Charsets.US_ASCII);
+
+  private NDependReportSplitter() {
+  }
+
+  /**
+   * Returns the byte ranges of the top-level &lt;Assembly&gt; elements, or an empty list when the report cannot be split.
+   * Tags within comments and CDATA sections are ignored.
+   */
+  public static List<Chunk> split(File file, int bufferSize) throws IOException {
+    ImmutableList.Builder<Chunk> chunks = ImmutableList.builder();
+    InputStream in = new FileInputStream(file);
+
+    try {
+      byte[] buffer = new byte[bufferSize];
+      long offset = 0;
+      int line = 1;
+      int openMatch = 0;
+      int closeMatch = 0;
+      int commentMatch = 0;
+      int cdataMatch = 0;
+      byte[] skipUntil = null;
+      int skipMatch = 0;
+      long start = -1;
+      int startLine = 0;
+
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        for (int i = 0; i < read; i++) {
+          byte b = buffer[i];
+
+          if (skipUntil != null) {
+            skipMatch = next(skipUntil, skipMatch, b);
+            if (skipMatch == skipUntil.length) {
+              skipUntil = null;
+            }
+          } else {
+            commentMatch = next(COMMENT_START, commentMatch, b);
+            cdataMatch = next(CDATA_START, cdataMatch, b);
+            if (commentMatch == COMMENT_START.length || cdataMatch == CDATA_START.length) {
+              skipUntil = commentMatch == COMMENT_START.length ? COMMENT_END : CDATA_END;
+              skipMatch = 0;
+              openMatch = 0;
+              closeMatch = 0;
+              commentMatch = 0;
+              cdataMatch = 0;
+            }
+
+            if (openMatch == OPEN_TAG.length) {
+              if (isTagNameEnd(b)) {
+                if (start != -1) {
+                  return ImmutableList.of();
+                }
+                start = offset + i - OPEN_TAG.length;
+                startLine = line;
+              }
+              openMatch = 0;
+            }
+            openMatch = next(OPEN_TAG, openMatch, b);
+
+            closeMatch = next(CLOSE_TAG, closeMatch, b);
+            if (closeMatch == CLOSE_TAG.length) {
+              if (start == -1) {
+                return ImmutableList.of();
+              }
+              chunks.add(new Chunk(start, offset + i + 1, startLine));
+              start = -1;
+              closeMatch = 0;
+            }
+          }
+
+          if (b == '\n') {
+            line++;
+          }
+        }
+        offset += read;
+      }
+
+      return start == -1 && skipUntil == null ? chunks.build() : ImmutableList.<Chunk>of();
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  /**
+   * Length of the longest prefix of the tag ending with the given byte, once {@code matched} bytes of the tag have been matched.
+   */
+  private static int next(byte[] tag, int matched, byte b) {
+    if (b == tag[matched]) {
+      return matched + 1;
+    }
+    for (int length = matched; length > 0; length--) {
+      if (tag[length - 1] == b && regionMatches(tag, matched - length + 1, length - 1)) {
+        return length;
+      }
+    }
+    return 0;
+  }
+
+  private static boolean regionMatches(byte[] tag, int offset, int length) {
+    for (int i = 0; i < length; i++) {
+      if (tag[offset + i] != tag[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isTagNameEnd(byte b) {
+    return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '>';
+  }
+
+  public static class Chunk {
+
+    private final long start;
+    private final long end;
+    private final int firstLine;
+
+    public Chunk(long start, long end, int firstLine) {
+      this.start = start;
+      this.end = end;
+      this.firstLine = firstLine;
+    }
+
+    public long start() {
+      return start;
+    }
+
+    public long end() {
+      return end;
+    }
+
+    public int firstLine() {
+      return firstLine;
+    }
+
+    public InputStream open(File file) throws IOException {
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        return new ByteBufferInputStream(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, start, end - start));
+      } finally {
+        raf.close();
+      }
+    }
+
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, buffer.remaining());
+      buffer.get(b, off, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+
+  }
+
+}
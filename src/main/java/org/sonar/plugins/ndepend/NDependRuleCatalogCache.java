@@ -0,0 +1,173 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+public class NDependRuleCatalogCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(NDependRuleCatalogCache.class);
+
+  private static final int MAGIC = 0x4E445233;
+
+  private final File dir;
+
+  public NDependRuleCatalogCache(File dir) {
+    this.dir = dir;
+  }
+
+  @CheckForNull
+  public List<NDependRuleMetadata> load(String xml) {
+    File file = cacheFile(xml);
+    if (!file.isFile()) {
+      return null;
+    }
+
+    long length = file.length();
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (in.readInt() != MAGIC) {
+        return null;
+      }
+
+      int count = checkLength(in.readInt(), length);
+      List<NDependRuleMetadata> rules = Lists.newArrayListWithCapacity(count);
+      for (int i = 0; i < count; i++) {
+        String key = readString(in, length);
+        String severity = readString(in, length);
+        String category = in.readBoolean() ? readString(in, length) : null;
+        String name = readString(in, length);
+        String description = readString(in, length);
+        rules.add(new NDependRuleMetadata(key, severity, category, name, description));
+      }
+      return rules;
+    } catch (IOException e) {
+      LOG.debug("Unable to read the NDepend rule catalog cache " + file.getAbsolutePath(), e);
+      return null;
+    } catch (RuntimeException e) {
+      LOG.debug("Unable to read the NDepend rule catalog cache " + file.getAbsolutePath(), e);
+      return null;
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  public void save(String xml, List<NDependRuleMetadata> rules) {
+    File file = cacheFile(xml);
+    DataOutputStream out = null;
+    try {
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("Unable to create the directory " + dir.getAbsolutePath());
+      }
+
+      File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+      out.writeInt(MAGIC);
+      out.writeInt(rules.size());
+      for (NDependRuleMetadata rule : rules) {
+        writeString(out, rule.key());
+        writeString(out, rule.severity());
+        out.writeBoolean(rule.category() != null);
+        if (rule.category() != null) {
+          writeString(out, rule.category());
+        }
+        writeString(out, rule.name());
+        writeString(out, rule.description());
+      }
+      out.close();
+
+      if (tmp.renameTo(file)) {
+        deleteOtherCatalogs(file);
+      } else {
+        tmp.delete();
+      }
+    } catch (IOException e) {
+      LOG.debug("Unable to write the NDepend rule catalog cache " + file.getAbsolutePath(), e);
+    } finally {
+      Closeables.closeQuietly(out);
+    }
+  }
+
+  /**
+   * The cache is kept across server restarts: the catalogs of previous values of the rules property are dropped.
+   */
+  private void deleteOtherCatalogs(File file) {
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File other : files) {
+        if (!other.equals(file) && other.getName().startsWith("ndepend-rules-") && other.getName().endsWith(".bin")) {
+          other.delete();
+        }
+      }
+    }
+  }
+
+  private File cacheFile(String xml) {
+    return new File(dir, "ndepend-rules-" + sha1(xml) + ".bin");
+  }
+
+  private static String sha1(String value) {
+    try {
+      return NDependAnalysisCache.toHex(MessageDigest.getInstance("SHA-1").digest(value.getBytes(Charsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static int checkLength(int length, long fileLength) throws IOException {
+    if (length < 0 || length > fileLength) {
+      throw new IOException("Invalid length: " + length);
+    }
+    return length;
+  }
+
+  private static String readString(DataInputStream in, long fileLength) throws IOException {
+    byte[] bytes = new byte[checkLength(in.readInt(), fileLength)];
+    in.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(Charsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+public class NDependRuleMetadata {
+
+  private final String key;
+  private final String severity;
+  private final String category;
+  private final String name;
+  private final String description;
+
+  public NDependRuleMetadata(String key, String severity, @Nullable String category, String name, String description) {
+    this.key = key;
+    this.severity = severity;
+    this.category = category;
+    this.name = name;
+    this.description = description;
+  }
+
+  public String key() {
+    return key;
+  }
+
+  public String severity() {
+    return severity;
+  }
+
+  @CheckForNull
+  public String category() {
+    return category;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public String description() {
+    return description;
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.io.Closeables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Set;
+
+public class NDependRuleSetWriter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(NDependRuleSetWriter.class);
+
+  private static final QName KEY = new QName("Key");
+
+  private NDependRuleSetWriter() {
+  }
+
+  public static int write(String rulesXml, Set<String> ruleKeys, File file) {
+    StringReader reader = null;
+    OutputStream out = null;
+    XMLEventReader events = null;
+    XMLEventWriter writer = null;
+
+    try {
+      reader = new StringReader(rulesXml);
+      out = new FileOutputStream(file);
+      events = NDependXmlFactory.inputFactory().createXMLEventReader(reader);
+      writer = NDependXmlFactory.outputFactory().createXMLEventWriter(out, Charsets.UTF_8.name());
+
+      int written = 0;
+      while (events.hasNext()) {
+        XMLEvent event = events.nextEvent();
+
+        if (event.isStartElement() && isRule(event.asStartElement())) {
+          Attribute key = event.asStartElement().getAttributeByName(KEY);
+          if (key == null || !ruleKeys.contains(key.getValue())) {
+            skipElement(events);
+            continue;
+          }
+          written++;
+        }
+
+        writer.add(event);
+      }
+
+      writer.close();
+      writer = null;
+      out.close();
+      return written;
+    } catch (XMLStreamException e) {
+      throw Throwables.propagate(e);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      closeQuietly(writer);
+      closeQuietly(events);
+      Closeables.closeQuietly(out);
+      Closeables.closeQuietly(reader);
+    }
+  }
+
+  private static boolean isRule(StartElement element) {
+    return "Rule".equals(element.getName().getLocalPart());
+  }
+
+  private static void skipElement(XMLEventReader events) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      XMLEvent event = events.nextEvent();
+      if (event.isStartElement()) {
+        depth++;
+      } else if (event.isEndElement()) {
+        depth--;
+      }
+    }
+  }
+
+  private static void closeQuietly(@Nullable XMLEventWriter writer) {
+    if (writer != null) {
+      try {
+        writer.close();
+      } catch (XMLStreamException e) {
+        LOG.debug("Unable to close the NDepend rule set writer", e);
+      }
+    }
+  }
+
+  private static void closeQuietly(@Nullable XMLEventReader reader) {
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (XMLStreamException e) {
+        LOG.debug("Unable to close the NDepend rules reader", e);
+      }
+    }
+  }
+
+}
@@ -19,28 +19,40 @@
  */
 package org.sonar.plugins.ndepend;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.platform.ServerFileSystem;
+import org.sonar.api.rule.Severity;
 import org.sonar.api.server.rule.RulesDefinition;
 
 import javax.annotation.Nullable;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
+import java.io.File;
 import java.io.StringReader;
+import java.util.List;
 
 public class NDependRulesDefinition implements RulesDefinition {
 
   private static final Logger LOG = LoggerFactory.getLogger(NDependRulesDefinition.class);
 
   private final NDependConfiguration conf;
+  private final NDependRuleCatalogCache cache;
 
-  public NDependRulesDefinition(NDependConfiguration conf) {
+  public NDependRulesDefinition(NDependConfiguration conf, ServerFileSystem fileSystem) {
+    this(conf, new NDependRuleCatalogCache(new File(fileSystem.getHomeDir(), "data/ndepend")));
+  }
+
+  @VisibleForTesting
+  NDependRulesDefinition(NDependConfiguration conf, NDependRuleCatalogCache cache) {
     this.conf = conf;
+    this.cache = cache;
   }
 
   @Override
@@ -54,7 +66,20 @@ public class NDependRulesDefinition implements RulesDefinition {
       LOG.warn("No NDepend rules defined.");
     } else {
       try {
-        new NDependRulesParser(repository).parse(xml);
+        List<NDependRuleMetadata> rules = cache.load(xml);
+        boolean cached = rules != null;
+        if (!cached) {
+          rules = Lists.newArrayList();
+          new NDependRulesParser(rules).parse(xml);
+        }
+
+        for (NDependRuleMetadata rule : rules) {
+          createRule(repository, rule);
+        }
+
+        if (!cached) {
+          cache.save(xml, rules);
+        }
       } catch (Exception e) {
         LOG.error("Error while creating the NDepend rule repository: " + e.getMessage(), e);
       }
@@ -63,22 +88,34 @@ public class NDependRulesDefinition implements RulesDefinition {
     repository.done();
   }
 
+  private static void createRule(NewRepository repository, NDependRuleMetadata rule) {
+    if (repository.rule(rule.key()) != null) {
+      LOG.error("Skipping the duplicate NDepend rule \"" + rule.key() + "\".");
+    } else if (!Severity.ALL.contains(rule.severity())) {
+      LOG.error("Skipping the NDepend rule \"" + rule.key() + "\" with the unknown priority \"" + rule.severity() + "\".");
+    } else {
+      NewRule newRule = repository.createRule(rule.key()).setName(rule.name()).setSeverity(rule.severity()).setHtmlDescription(rule.description());
+      if (rule.category() != null) {
+        newRule.addTags(rule.category());
+      }
+    }
+  }
+
   private static class NDependRulesParser {
 
-    private final NewRepository repository;
+    private final List<NDependRuleMetadata> rules;
     private XMLStreamReader stream;
 
-    public NDependRulesParser(NewRepository repository) {
-      this.repository = repository;
+    public NDependRulesParser(List<NDependRuleMetadata> rules) {
+      this.rules = rules;
     }
 
     public void parse(String xml) {
       StringReader reader = null;
-      XMLInputFactory xmlFactory = XMLInputFactory.newInstance();
 
       try {
         reader = new StringReader(xml);
-        stream = xmlFactory.createXMLStreamReader(reader);
+        stream = NDependXmlFactory.inputFactory().createXMLStreamReader(reader);
 
         while (stream.hasNext()) {
           if (stream.next() == XMLStreamConstants.START_ELEMENT) {
@@ -127,10 +164,7 @@ public class NDependRulesDefinition implements RulesDefinition {
             throw parseError("Missing rule description");
           }
 
-          NewRule rule = repository.createRule(key).setName(name).setSeverity(priority).setHtmlDescription(description);
-          if (category != null) {
-            rule.addTags(category);
-          }
+          rules.add(new NDependRuleMetadata(key, priority, category, name, description));
 
           break;
         } else if (next == XMLStreamConstants.START_ELEMENT) {
@@ -0,0 +1,122 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+public class NDependRuntimeHistory {
+
+  private static final Logger LOG = LoggerFactory.getLogger(NDependRuntimeHistory.class);
+
+  private static final int MAX_RUNTIMES = 5;
+  private static final int MIN_RUNTIMES = 3;
+  private static final int DEADLINE_FACTOR = 3;
+  private static final long MIN_DEADLINE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private final File file;
+
+  public NDependRuntimeHistory(File workDir) {
+    this.file = new File(workDir, "ndepend-runtimes.properties");
+  }
+
+  public synchronized List<Long> runtimes(String ndependProject) {
+    String value = load().getProperty(ndependProject);
+    if (value == null) {
+      return Collections.emptyList();
+    }
+
+    List<Long> result = Lists.newArrayList();
+    for (String runtime : Splitter.on(',').omitEmptyStrings().split(value)) {
+      try {
+        result.add(Long.parseLong(runtime));
+      } catch (NumberFormatException e) {
+        LOG.debug("Ignoring the invalid NDepend runtime \"" + runtime + "\" recorded in " + file.getAbsolutePath());
+      }
+    }
+    return result;
+  }
+
+  public synchronized void record(String ndependProject, long runtimeMillis) {
+    List<Long> runtimes = Lists.newArrayList(runtimes(ndependProject));
+    runtimes.add(runtimeMillis);
+    if (runtimes.size() > MAX_RUNTIMES) {
+      runtimes = runtimes.subList(runtimes.size() - MAX_RUNTIMES, runtimes.size());
+    }
+
+    Properties properties = load();
+    properties.setProperty(ndependProject, Joiner.on(',').join(runtimes));
+
+    OutputStream out = null;
+    try {
+      out = new FileOutputStream(file);
+      properties.store(out, "Durations in milliseconds of the last NDepend executions");
+    } catch (IOException e) {
+      LOG.debug("Unable to record the NDepend runtime in " + file.getAbsolutePath(), e);
+    } finally {
+      Closeables.closeQuietly(out);
+    }
+  }
+
+  /**
+   * A few times the longest recent runtime, but never more than the configured timeout.
+   */
+  public long deadlineMillis(String ndependProject, long timeoutMillis) {
+    List<Long> runtimes = runtimes(ndependProject);
+    if (runtimes.size() < MIN_RUNTIMES) {
+      return timeoutMillis;
+    }
+
+    long deadline = Math.max(MIN_DEADLINE_MILLIS, DEADLINE_FACTOR * Collections.max(runtimes));
+    return Math.min(deadline, timeoutMillis);
+  }
+
+  private Properties load() {
+    Properties properties = new Properties();
+    if (file.isFile()) {
+      InputStream in = null;
+      try {
+        in = new FileInputStream(file);
+        properties.load(in);
+      } catch (IOException e) {
+        LOG.debug("Unable to read the NDepend runtimes recorded in " + file.getAbsolutePath(), e);
+      } finally {
+        Closeables.closeQuietly(in);
+      }
+    }
+    return properties;
+  }
+
+}
@@ -20,37 +20,47 @@
 package org.sonar.plugins.ndepend;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.FileSystem;
-import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.batch.fs.InputFile.Type;
 import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.issue.Issuable;
-import org.sonar.api.issue.Issuable.IssueBuilder;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
-import org.sonar.api.rule.RuleKey;
-import org.sonar.api.rules.ActiveRule;
+import org.sonar.plugins.ndepend.NDependMetrics.Phase;
+
+import javax.annotation.Nullable;
 
 import java.io.File;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 public class NDependSensor implements Sensor {
 
   private static final Logger LOG = LoggerFactory.getLogger(NDependSensor.class);
 
+  private static final long REPORT_POLL_INTERVAL_MILLIS = 100;
+
   private final NDependConfiguration conf;
   private final FileSystem fs;
   private final RulesProfile profile;
   private final ResourcePerspectives perspectives;
+  private final NDependReactorAnalysis reactorAnalysis;
 
-  public NDependSensor(NDependConfiguration conf, FileSystem fs, RulesProfile profile, ResourcePerspectives perspectives) {
+  public NDependSensor(NDependConfiguration conf, FileSystem fs, RulesProfile profile, ResourcePerspectives perspectives, NDependReactorAnalysis reactorAnalysis) {
     this.conf = conf;
     this.fs = fs;
     this.profile = profile;
     this.perspectives = perspectives;
+    this.reactorAnalysis = reactorAnalysis;
   }
 
   @Override
@@ -75,54 +85,151 @@ public class NDependSensor implements Sensor {
 
   @Override
   public void analyse(Project project, SensorContext context) {
-    analyze(context, new NDependExecutor());
+    analyze(context, reactorAnalysis.executor(conf));
   }
 
   @VisibleForTesting
   void analyze(SensorContext context, NDependExecutor executor) {
-    File reportFile = new File(fs.workDir(), "ndepend-report.xml");
-    executor.execute(conf.ruleRunnerPath(), conf.ndependProjectPath(), reportFile, conf.timeout());
+    NDependMetrics metrics = new NDependMetrics();
+    NDependIssueBuffer buffer = new NDependIssueBuffer(fs.workDir(), conf.maxBufferedViolations());
+    NDependActiveRules activeRules = NDependActiveRules.from(profile);
+    NDependFileResolver fileResolver = new NDependFileResolver(fs, perspectives);
+
+    if (conf.cacheEnabled()) {
+      NDependAnalysisCache cache = new NDependAnalysisCache(fs.workDir());
+      String hash = cache.inputsHash(conf.ruleRunnerPath(), conf.ndependProjectPath(), conf.rules(), activeRules.keys());
+
+      if (hash == null) {
+        executeAndParse(executor, buffer, activeRules, fileResolver, metrics);
+      } else if (cache.replay(hash, buffer)) {
+        LOG.info("NDepend inputs are unchanged, reusing the issues of the previous analysis.");
+      } else {
+        NDependAnalysisCache.Recorder recorder = cache.recorder(hash, buffer);
+        try {
+          executeAndParse(executor, recorder, activeRules, fileResolver, metrics);
+          recorder.save();
+        } finally {
+          recorder.close();
+        }
+      }
+    } else {
+      executeAndParse(executor, buffer, activeRules, fileResolver, metrics);
+    }
+
+    metrics.addViolationsSeen(buffer.received());
+    NDependIssueReporter reporter = new NDependIssueReporter(activeRules, fileResolver, metrics);
+    buffer.flushTo(reporter);
+    reporter.skippedIssues().logSummary();
+
+    metrics.logSummary();
+    if (conf.dumpMetrics()) {
+      metrics.writeJson(new File(fs.workDir(), "ndepend-metrics.json"));
+    }
+  }
+
+  private void executeAndParse(NDependExecutor executor, NDependReportParserCallback callback, NDependActiveRules activeRules, NDependFileResolver fileResolver,
+    NDependMetrics metrics) {
+    if (conf.streamReport()) {
+      FutureTask<File> run = reactorAnalysis.streamedRun(executor, conf, fs.workDir(), activeRules.keys());
+      if (run != null) {
+        executeAndParseConcurrently(run, new File(fs.workDir(), conf.reportFileName()),
+          new NDependReportParser(callback, NDependReportParser.DEFAULT_BUFFER_SIZE, 1, activeRules.keys()), metrics);
+        return;
+      }
+    }
+
+    long start = metrics.start();
+    File report = reactorAnalysis.report(executor, conf, fs.workDir(), activeRules.keys());
+    metrics.stop(Phase.EXECUTION, start);
+
+    NDependReportParser parser = new NDependReportParser(callback, NDependReportParser.DEFAULT_BUFFER_SIZE, conf.parserThreads(), activeRules.keys(),
+      conf.memoryMappedReport());
+    if (reactorAnalysis.consumers(conf.ndependProjectPath()) <= 1) {
+      parse(parser, report, null, metrics);
+    } else {
+      LOG.info("Reading the issues of the module from the NDepend report shared with other modules: " + report.getAbsolutePath());
+      parseModuleFiles(parser, report, fileResolver, metrics);
+    }
+  }
 
-    new NDependReportParser(
-      new NDependReportParserCallback() {
+  private static void parse(NDependReportParser parser, File reportFile, @Nullable InputStream in, NDependMetrics metrics) {
+    long start = metrics.start();
+    try {
+      if (in == null) {
+        parser.parse(reportFile);
+      } else {
+        parser.parse(reportFile, in);
+      }
+    } finally {
+      stopParsing(parser, metrics, start);
+    }
+  }
+
+  private static void parseModuleFiles(NDependReportParser parser, File reportFile, final NDependFileResolver fileResolver, NDependMetrics metrics) {
+    long start = metrics.start();
+    try {
+      parser.parse(reportFile, fileResolver.normalizedPaths(), new Function<String, String>() {
+        @Override
+        public String apply(String path) {
+          return fileResolver.normalize(path);
+        }
+      });
+    } finally {
+      stopParsing(parser, metrics, start);
+    }
+  }
+
+  private static void stopParsing(NDependReportParser parser, NDependMetrics metrics, long start) {
+    metrics.stop(Phase.PARSING, start);
+    metrics.addReportBytes(parser.bytesRead());
+    metrics.addElementsScanned(parser.elementsScanned());
+    if (parser.filteredViolations() > 0) {
+      metrics.addViolationsSeen(parser.filteredViolations());
+      metrics.issuesSkipped(NDependIssueReporter.RULE_DISABLED, parser.filteredViolations());
+    }
+  }
+
+  private static void executeAndParseConcurrently(final FutureTask<File> run, File reportFile, NDependReportParser parser, final NDependMetrics metrics) {
+    if (reportFile.exists() && !reportFile.delete()) {
+      run.cancel(false);
+      throw new IllegalStateException("Unable to delete the previous NDepend report: " + reportFile.getAbsolutePath());
+    }
 
+    ExecutorService runner = Executors.newSingleThreadExecutor();
+    try {
+      runner.submit(new Runnable() {
         @Override
-        public void onIssue(String ruleKey, String file, int line) {
-          ActiveRule rule = profile.getActiveRule(NDependPlugin.REPOSITORY_KEY, ruleKey);
-          if (rule == null) {
-            logSkippedIssue("the rule is disabled in the current quality profile", ruleKey, file, line);
-            return;
-          }
-
-          InputFile inputFile = fs.inputFile(
-            fs.predicates().and(
-              fs.predicates().hasAbsolutePath(file),
-              fs.predicates().hasType(Type.MAIN)));
-
-          if (inputFile == null) {
-            logSkippedIssue("the file is not imported in SonarQube", ruleKey, file, line);
-            return;
-          }
-
-          Issuable issuable = perspectives.as(Issuable.class, inputFile);
-          if (issuable == null) {
-            logSkippedIssue("no issuable has been found for the file", ruleKey, file, line);
-            return;
-          }
-
-          IssueBuilder builder = issuable.newIssueBuilder();
-          builder.ruleKey(RuleKey.of(NDependPlugin.REPOSITORY_KEY, ruleKey));
-          builder.line(line);
-          builder.message(rule.getRule().getName());
-
-          issuable.addIssue(builder.build());
+        public void run() {
+          long start = metrics.start();
+          run.run();
+          metrics.stop(Phase.EXECUTION, start);
         }
+      });
 
-        private void logSkippedIssue(String reason, String ruleKey, String file, int line) {
-          LOG.debug("Skipping NDepend issue on file " + file + " at line " + line + " on rule " + ruleKey + " because " + reason);
+      try {
+        parse(parser, reportFile, new NDependGrowingFileInputStream(reportFile, run, REPORT_POLL_INTERVAL_MILLIS), metrics);
+      } catch (RuntimeException e) {
+        if (run.isDone()) {
+          waitFor(run);
         }
+        throw e;
+      }
 
-      }).parse(reportFile);
+      waitFor(run);
+    } finally {
+      runner.shutdownNow();
+    }
+  }
+
+  private static void waitFor(Future<?> execution) {
+    try {
+      execution.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
   }
 
 }
@@ -0,0 +1,136 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+public class NDependSkippedIssues {
+
+  private static final Logger LOG = LoggerFactory.getLogger(NDependSkippedIssues.class);
+
+  private static final int TOP_OFFENDERS = 5;
+  private static final int DEBUG_SAMPLE_RATE = 1000;
+
+  private final Logger log;
+  private final Map<String, Map<String, Counter>> byReasonAndRule = Maps.newLinkedHashMap();
+  private final Map<String, Counter> byReason = Maps.newHashMap();
+  private final Map<String, Counter> byFile = Maps.newHashMap();
+  private long total;
+
+  public NDependSkippedIssues() {
+    this(LOG);
+  }
+
+  @VisibleForTesting
+  NDependSkippedIssues(Logger log) {
+    this.log = log;
+  }
+
+  public void record(String reason, String ruleKey, String file, int line) {
+    total++;
+
+    Map<String, Counter> byRule = byReasonAndRule.get(reason);
+    if (byRule == null) {
+      byRule = Maps.newHashMap();
+      byReasonAndRule.put(reason, byRule);
+    }
+    increment(byRule, ruleKey);
+    increment(byFile, file);
+    long reasonCount = increment(byReason, reason);
+
+    if (reasonCount % DEBUG_SAMPLE_RATE == 1 && log.isDebugEnabled()) {
+      log.debug("Skipping NDepend issue on file " + file + " at line " + line + " on rule " + ruleKey + " because " + reason
+        + " (sampled: occurrence " + reasonCount + " for this reason)");
+    }
+  }
+
+  public long total() {
+    return total;
+  }
+
+  public long count(String reason, String ruleKey) {
+    Map<String, Counter> byRule = byReasonAndRule.get(reason);
+    Counter counter = byRule == null ? null : byRule.get(ruleKey);
+    return counter == null ? 0 : counter.value;
+  }
+
+  public void logSummary() {
+    if (total == 0) {
+      return;
+    }
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(total).append(" NDepend violations were not reported as issues.");
+    for (Map.Entry<String, Map<String, Counter>> entry : byReasonAndRule.entrySet()) {
+      String reason = entry.getKey();
+      sb.append(' ').append(byReason.get(reason).value).append(" because ").append(reason);
+      sb.append(" (top rules: ").append(top(entry.getValue())).append(").");
+    }
+    sb.append(" Top files: ").append(top(byFile)).append('.');
+
+    log.info(sb.toString());
+  }
+
+  private static long increment(Map<String, Counter> counters, String key) {
+    Counter counter = counters.get(key);
+    if (counter == null) {
+      counter = new Counter();
+      counters.put(key, counter);
+    }
+    return ++counter.value;
+  }
+
+  private static String top(Map<String, Counter> counters) {
+    List<Map.Entry<String, Counter>> entries = Lists.newArrayList(counters.entrySet());
+    Collections.sort(entries, new Comparator<Map.Entry<String, Counter>>() {
+      @Override
+      public int compare(Map.Entry<String, Counter> a, Map.Entry<String, Counter> b) {
+        int result = Long.compare(b.getValue().value, a.getValue().value);
+        return result != 0 ? result : a.getKey().compareTo(b.getKey());
+      }
+    });
+
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < Math.min(TOP_OFFENDERS, entries.size()); i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(entries.get(i).getKey()).append('=').append(entries.get(i).getValue().value);
+    }
+    if (entries.size() > TOP_OFFENDERS) {
+      sb.append(", ...");
+    }
+    return sb.toString();
+  }
+
+  private static class Counter {
+    private long value;
+  }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+
+import java.lang.reflect.InvocationTargetException;
+
+public final class NDependXmlFactory {
+
+  private static final String[] PREFERRED_IMPLEMENTATIONS = {
+    "com.fasterxml.aalto.stax.InputFactoryImpl",
+    "com.ctc.wstx.stax.WstxInputFactory"
+  };
+
+  private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+  private NDependXmlFactory() {
+  }
+
+  public static XMLInputFactory inputFactory() {
+    return INPUT_FACTORY;
+  }
+
+  public static XMLOutputFactory outputFactory() {
+    return OUTPUT_FACTORY;
+  }
+
+  @VisibleForTesting
+  static XMLInputFactory createInputFactory() {
+    XMLInputFactory factory = null;
+    for (String implementation : PREFERRED_IMPLEMENTATIONS) {
+      factory = newInstance(implementation);
+      if (factory != null) {
+        break;
+      }
+    }
+    if (factory == null) {
+      factory = XMLInputFactory.newInstance();
+    }
+
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    setIfSupported(factory, "org.codehaus.stax2.internNames", true);
+    setIfSupported(factory, "com.ctc.wstx.maxElementDepth", Integer.MAX_VALUE);
+
+    return factory;
+  }
+
+  @Nullable
+  private static XMLInputFactory newInstance(String className) {
+    try {
+      return (XMLInputFactory) Class.forName(className, true, NDependXmlFactory.class.getClassLoader()).getConstructor().newInstance();
+    } catch (ClassNotFoundException e) {
+      return null;
+    } catch (InstantiationException e) {
+      return null;
+    } catch (IllegalAccessException e) {
+      return null;
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (InvocationTargetException e) {
+      return null;
+    } catch (LinkageError e) {
+      return null;
+    }
+  }
+
+  private static void setIfSupported(XMLInputFactory factory, String property, Object value) {
+    if (factory.isPropertySupported(property)) {
+      factory.setProperty(property, value);
+    }
+  }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.Rule;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NDependActiveRulesTest {
+
+  @Test
+  public void test() {
+    RulesProfile profile = mock(RulesProfile.class);
+    when(profile.getActiveRulesByRepository(NDependPlugin.REPOSITORY_KEY)).thenReturn(ImmutableList.of(activeRule("Rule1", "Rule one"), activeRule("Rule2", "Rule two")));
+
+    NDependActiveRules activeRules = NDependActiveRules.from(profile);
+
+    assertThat(activeRules.keys()).containsOnly("Rule1", "Rule2");
+    assertThat(activeRules.name("Rule1")).isEqualTo("Rule one");
+    assertThat(activeRules.name("Rule2")).isEqualTo("Rule two");
+    assertThat(activeRules.name("Rule3")).isNull();
+  }
+
+  private static ActiveRule activeRule(String key, String name) {
+    Rule rule = mock(Rule.class);
+    when(rule.getName()).thenReturn(name);
+    ActiveRule activeRule = mock(ActiveRule.class);
+    when(activeRule.getRuleKey()).thenReturn(key);
+    when(activeRule.getRule()).thenReturn(rule);
+    return activeRule;
+  }
+
+}
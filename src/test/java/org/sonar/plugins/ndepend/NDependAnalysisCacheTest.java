@@ -0,0 +1,186 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class NDependAnalysisCacheTest {
+
+  private static final List<String> KEYS = ImmutableList.of("Rule1", "Rule2");
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File projectDir;
+  private File ndproj;
+  private File assembly;
+  private String runner;
+  private NDependAnalysisCache cache;
+
+  @Before
+  public void init() throws Exception {
+    projectDir = tmp.newFolder("project");
+    File binDir = new File(projectDir, "bin");
+    binDir.mkdirs();
+    assembly = new File(binDir, "ConsoleApplication1.exe");
+    Files.write("v1", assembly, Charsets.UTF_8);
+
+    ndproj = new File(projectDir, "project.ndproj");
+    Files.write(
+      "<NDepend AppName=\"ConsoleApplication1\">"
+        + "<Assemblies><Name>ConsoleApplication1</Name></Assemblies>"
+        + "<FrameworkAssemblies><Name>mscorlib</Name></FrameworkAssemblies>"
+        + "<Dirs><Dir>$(NdProjectDir)/bin</Dir><Dir>C:/Windows/Microsoft.NET/Framework/v4.0.30319</Dir></Dirs>"
+        + "</NDepend>",
+      ndproj, Charsets.UTF_8);
+
+    File runnerFile = tmp.newFile("runner.exe");
+    Files.write("runner v1", runnerFile, Charsets.UTF_8);
+    runner = runnerFile.getAbsolutePath();
+
+    cache = new NDependAnalysisCache(tmp.newFolder("work"));
+  }
+
+  @Test
+  public void hash_depends_on_inputs() throws Exception {
+    String hash = cache.inputsHash(runner, ndproj.getAbsolutePath(), "<rules/>", KEYS);
+    assertThat(hash).isNotNull();
+    assertThat(cache.inputsHash(runner, ndproj.getAbsolutePath(), "<rules/>", KEYS)).isEqualTo(hash);
+    assertThat(cache.inputsHash(runner, ndproj.getAbsolutePath(), "<rules></rules>", KEYS)).isNotEqualTo(hash);
+    assertThat(cache.inputsHash(runner, ndproj.getAbsolutePath(), "<rules/>", ImmutableList.of("Rule2", "Rule1"))).isEqualTo(hash);
+    assertThat(cache.inputsHash(runner, ndproj.getAbsolutePath(), "<rules/>", ImmutableList.of("Rule1"))).isNotEqualTo(hash);
+
+    Files.write("v2", assembly, Charsets.UTF_8);
+    assertThat(cache.inputsHash(runner, ndproj.getAbsolutePath(), "<rules/>", KEYS)).isNotEqualTo(hash);
+  }
+
+  @Test
+  public void hash_depends_on_rule_runner_binary() throws Exception {
+    String hash = cache.inputsHash(runner, ndproj.getAbsolutePath(), "<rules/>", KEYS);
+    Files.write("runner v2", new File(runner), Charsets.UTF_8);
+    assertThat(cache.inputsHash(runner, ndproj.getAbsolutePath(), "<rules/>", KEYS)).isNotEqualTo(hash);
+  }
+
+  @Test
+  public void no_hash_when_the_rule_runner_is_missing() {
+    new File(runner).delete();
+    assertThat(cache.inputsHash(runner, ndproj.getAbsolutePath(), "<rules/>", KEYS)).isNull();
+  }
+
+  @Test
+  public void no_hash_when_an_assembly_is_missing() {
+    assembly.delete();
+    assertThat(cache.inputsHash(runner, ndproj.getAbsolutePath(), "<rules/>", KEYS)).isNull();
+  }
+
+  @Test
+  public void record_and_replay() {
+    NDependReportParserCallback delegate = mock(NDependReportParserCallback.class);
+    NDependAnalysisCache.Recorder recorder = cache.recorder("hash1", delegate);
+    recorder.onIssue("Rule1", "A.cs", 1);
+    recorder.onIssue("Rule2", "B.cs", 2);
+    recorder.onIssue("Rule1", "B.cs", 3);
+    recorder.save();
+    recorder.close();
+
+    Mockito.verify(delegate).onIssue("Rule1", "A.cs", 1);
+
+    NDependReportParserCallback callback = mock(NDependReportParserCallback.class);
+    assertThat(cache.replay("hash2", callback)).isFalse();
+    Mockito.verifyZeroInteractions(callback);
+
+    assertThat(cache.replay("hash1", callback)).isTrue();
+    InOrder inOrder = Mockito.inOrder(callback);
+    inOrder.verify(callback).onIssue("Rule1", "A.cs", 1);
+    inOrder.verify(callback).onIssue("Rule2", "B.cs", 2);
+    inOrder.verify(callback).onIssue("Rule1", "B.cs", 3);
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void truncated_cache_is_a_miss() throws Exception {
+    File cacheFile = recordTwoIssues();
+    byte[] content = Files.toByteArray(cacheFile);
+    Files.write(Arrays.copyOf(content, content.length - 5), cacheFile);
+
+    NDependReportParserCallback callback = mock(NDependReportParserCallback.class);
+    assertThat(cache.replay("hash1", callback)).isFalse();
+    Mockito.verifyZeroInteractions(callback);
+    assertThat(cacheFile.exists()).isFalse();
+  }
+
+  @Test
+  public void corrupt_cache_is_a_miss() throws Exception {
+    File cacheFile = recordTwoIssues();
+    byte[] content = Files.toByteArray(cacheFile);
+    // Overwrite the rule key id of the last issue, which is followed by its file id, its line and the end record
+    content[content.length - 13] = 0x7F;
+    Files.write(content, cacheFile);
+
+    NDependReportParserCallback callback = mock(NDependReportParserCallback.class);
+    assertThat(cache.replay("hash1", callback)).isFalse();
+    Mockito.verifyZeroInteractions(callback);
+    assertThat(cacheFile.exists()).isFalse();
+  }
+
+  @Test
+  public void issues_are_written_as_they_arrive_and_discarded_unless_saved() throws Exception {
+    NDependAnalysisCache.Recorder recorder = cache.recorder("hash1", mock(NDependReportParserCallback.class));
+    File tmpFile = new File(tmp.getRoot(), "work/ndepend-cache.bin.tmp");
+    long length = tmpFile.length();
+    for (int i = 0; i < 10000; i++) {
+      recorder.onIssue("Rule1", "A.cs", i);
+    }
+    assertThat(tmpFile.length()).isGreaterThan(length);
+
+    recorder.close();
+    assertThat(tmpFile.exists()).isFalse();
+    assertThat(cache.replay("hash1", mock(NDependReportParserCallback.class))).isFalse();
+  }
+
+  private File recordTwoIssues() {
+    NDependAnalysisCache.Recorder recorder = cache.recorder("hash1", mock(NDependReportParserCallback.class));
+    recorder.onIssue("Rule1", "A.cs", 1);
+    recorder.onIssue("Rule2", "B.cs", 2);
+    recorder.save();
+    return new File(tmp.getRoot(), "work/ndepend-cache.bin");
+  }
+
+  @Test
+  public void nothing_to_replay() {
+    assertThat(cache.replay("hash", mock(NDependReportParserCallback.class))).isFalse();
+  }
+
+}
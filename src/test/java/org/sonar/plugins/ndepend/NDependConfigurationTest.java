@@ -71,6 +71,96 @@ public class NDependConfigurationTest {
     assertThat(conf.timeout()).isEqualTo(42);
   }
 
+  @Test
+  public void parserThreads() {
+    settings.setProperty(NDependPlugin.PARSER_THREADS_PROPERTY_KEY, 4);
+    assertThat(conf.parserThreads()).isEqualTo(4);
+  }
+
+  @Test
+  public void cacheEnabled() {
+    assertThat(conf.cacheEnabled()).isFalse();
+
+    settings.setProperty(NDependPlugin.CACHE_ENABLED_PROPERTY_KEY, true);
+    assertThat(conf.cacheEnabled()).isTrue();
+  }
+
+  @Test
+  public void streamReport() {
+    assertThat(conf.streamReport()).isFalse();
+
+    settings.setProperty(NDependPlugin.STREAM_REPORT_PROPERTY_KEY, true);
+    assertThat(conf.streamReport()).isTrue();
+  }
+
+  @Test
+  public void compressReport() {
+    assertThat(conf.compressReport()).isFalse();
+    assertThat(conf.reportFileName()).isEqualTo("ndepend-report.xml");
+
+    settings.setProperty(NDependPlugin.COMPRESS_REPORT_PROPERTY_KEY, true);
+    assertThat(conf.compressReport()).isTrue();
+    assertThat(conf.reportFileName()).isEqualTo("ndepend-report.xml.gz");
+  }
+
+  @Test
+  public void dumpMetrics() {
+    assertThat(conf.dumpMetrics()).isFalse();
+
+    settings.setProperty(NDependPlugin.DUMP_METRICS_PROPERTY_KEY, true);
+    assertThat(conf.dumpMetrics()).isTrue();
+  }
+
+  @Test
+  public void activeRulesOnly() {
+    assertThat(conf.activeRulesOnly()).isFalse();
+
+    settings.setProperty(NDependPlugin.ACTIVE_RULES_ONLY_PROPERTY_KEY, true);
+    assertThat(conf.activeRulesOnly()).isTrue();
+  }
+
+  @Test
+  public void concurrentRuns() {
+    settings.setProperty(NDependPlugin.CONCURRENT_RUNS_PROPERTY_KEY, 4);
+    assertThat(conf.concurrentRuns()).isEqualTo(4);
+  }
+
+  @Test
+  public void maxBufferedViolations() {
+    settings.setProperty(NDependPlugin.MAX_BUFFERED_VIOLATIONS_PROPERTY_KEY, 1000);
+    assertThat(conf.maxBufferedViolations()).isEqualTo(1000);
+  }
+
+  @Test
+  public void daemon() {
+    assertThat(conf.daemon()).isFalse();
+
+    settings.setProperty(NDependPlugin.DAEMON_PROPERTY_KEY, true);
+    assertThat(conf.daemon()).isTrue();
+  }
+
+  @Test
+  public void stall_timeout() {
+    settings.setProperty(NDependPlugin.STALL_TIMEOUT_PROPERTY_KEY, 3);
+    assertThat(conf.stallTimeout()).isEqualTo(3);
+  }
+
+  @Test
+  public void adaptive_timeout() {
+    assertThat(conf.adaptiveTimeout()).isFalse();
+
+    settings.setProperty(NDependPlugin.ADAPTIVE_TIMEOUT_PROPERTY_KEY, true);
+    assertThat(conf.adaptiveTimeout()).isTrue();
+  }
+
+  @Test
+  public void memory_mapped_report() {
+    assertThat(conf.memoryMappedReport()).isFalse();
+
+    settings.setProperty(NDependPlugin.MEMORY_MAPPED_REPORT_PROPERTY_KEY, true);
+    assertThat(conf.memoryMappedReport()).isTrue();
+  }
+
   @Test
   public void no_rule_runner_path() {
     thrown.expect(NullPointerException.class);
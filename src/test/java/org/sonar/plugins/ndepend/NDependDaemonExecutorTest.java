@@ -0,0 +1,147 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.command.CommandException;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class NDependDaemonExecutorTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private String daemon;
+  private NDependDaemonExecutor executor;
+
+  @Before
+  public void init() {
+    Assume.assumeTrue(File.separatorChar == '/');
+    daemon = new File("src/test/resources/NDependDaemonExecutorTest/daemon.sh").getAbsolutePath();
+    executor = new NDependDaemonExecutor(500, 50, 2000);
+  }
+
+  @After
+  public void stop() {
+    if (executor != null) {
+      executor.stop();
+    }
+  }
+
+  @Test
+  public void process_is_reused() throws Exception {
+    File report1 = tmp.newFile("report1.xml");
+    File report2 = tmp.newFile("report2.xml");
+    File ruleSet = tmp.newFile("rules.xml");
+
+    executor.execute(daemon, "project1.ndproj", report1, 1);
+    executor.execute(daemon, "project2.ndproj", report2, ruleSet, 1);
+
+    assertThat(Files.toString(report1, Charsets.UTF_8)).contains("ProjectFilePath=\"project1.ndproj\" RuleSet=\"\"");
+    assertThat(Files.toString(report2, Charsets.UTF_8)).contains("ProjectFilePath=\"project2.ndproj\" RuleSet=\"" + ruleSet.getAbsolutePath() + "\"");
+    assertThat(executor.starts()).isEqualTo(1);
+  }
+
+  @Test
+  public void errors_are_reported_without_restarting() throws Exception {
+    try {
+      executor.execute(daemon, "failing.ndproj", tmp.newFile("report1.xml"), 1);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).isEqualTo("The NDepend daemon failed to analyze failing.ndproj: ERROR Unable to load failing.ndproj");
+    }
+
+    executor.execute(daemon, "project.ndproj", tmp.newFile("report2.xml"), 1);
+    assertThat(executor.starts()).isEqualTo(1);
+  }
+
+  @Test
+  public void restart_after_a_crash() throws Exception {
+    try {
+      executor.execute(daemon, "crash.ndproj", tmp.newFile("report1.xml"), 1);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).isEqualTo("The NDepend daemon exited");
+    }
+
+    File report = tmp.newFile("report2.xml");
+    executor.execute(daemon, "project.ndproj", report, 1);
+    assertThat(Files.toString(report, Charsets.UTF_8)).contains("project.ndproj");
+    assertThat(executor.starts()).isEqualTo(2);
+  }
+
+  @Test
+  public void restart_when_health_check_fails() throws Exception {
+    executor.execute(daemon, "mute.ndproj", tmp.newFile("report1.xml"), 1);
+
+    File report = tmp.newFile("report2.xml");
+    executor.execute(daemon, "project.ndproj", report, 1);
+    assertThat(Files.toString(report, Charsets.UTF_8)).contains("project.ndproj");
+    assertThat(executor.starts()).isEqualTo(2);
+  }
+
+  @Test
+  public void stalled_analysis_is_interrupted_and_the_daemon_restarted() throws Exception {
+    long start = System.currentTimeMillis();
+    try {
+      executor.execute(daemon, "stall.ndproj", tmp.newFile("report1.xml"), 1);
+      fail();
+    } catch (CommandException e) {
+      assertThat(e.getMessage()).contains("NDepend made no progress during 500 ms");
+      assertThat(e.getMessage()).contains("Loading stall.ndproj");
+    }
+    assertThat(System.currentTimeMillis() - start).isLessThan(10000);
+
+    File report = tmp.newFile("report2.xml");
+    executor.execute(daemon, "project.ndproj", report, 1);
+    assertThat(Files.toString(report, Charsets.UTF_8)).contains("project.ndproj");
+    assertThat(executor.starts()).isEqualTo(2);
+  }
+
+  @Test
+  public void runtime_is_recorded() throws Exception {
+    File report = tmp.newFile("report.xml");
+    executor.execute(daemon, "project.ndproj", report, 1);
+
+    assertThat(new NDependRuntimeHistory(tmp.getRoot()).runtimes("project.ndproj")).hasSize(1);
+  }
+
+  @Test
+  public void daemon_cannot_be_started() throws Exception {
+    try {
+      executor.execute(new File(tmp.getRoot(), "missing.sh").getAbsolutePath(), "project.ndproj", tmp.newFile("report.xml"), 1);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).startsWith("Unable to start the NDepend daemon: ");
+    }
+  }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.command.CommandException;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class NDependExecutorTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Before
+  public void init() {
+    Assume.assumeTrue(File.separatorChar == '/');
+  }
+
+  @Test
+  public void stalled_execution_is_interrupted() throws Exception {
+    File report = tmp.newFile("report.xml");
+    long start = System.currentTimeMillis();
+    try {
+      new NDependExecutor(500, false, 50).execute(runner("stalling.sh"), "project.ndproj", report, 1);
+      fail();
+    } catch (CommandException e) {
+      assertThat(e.getMessage()).contains("NDepend made no progress during 500 ms");
+    }
+    assertThat(System.currentTimeMillis() - start).isLessThan(10000);
+  }
+
+  @Test
+  public void progressing_execution_is_not_interrupted() throws Exception {
+    File report = tmp.newFile("report.xml");
+    new NDependExecutor(500, false, 50).execute(runner("progressing.sh"), "project.ndproj", report, 1);
+
+    assertThat(Files.toString(report, Charsets.UTF_8)).contains("<NDependReport />");
+    assertThat(new NDependRuntimeHistory(tmp.getRoot()).runtimes("project.ndproj")).hasSize(1);
+  }
+
+  @Test
+  public void adaptive_deadline() throws Exception {
+    NDependRuntimeHistory history = new NDependRuntimeHistory(tmp.getRoot());
+    for (int i = 0; i < 3; i++) {
+      history.record("project.ndproj", 1);
+    }
+
+    // The deadline is one minute, way shorter than the 60 minutes timeout, but long enough for the runner
+    File report = tmp.newFile("report.xml");
+    new NDependExecutor(0, true, 50).execute(runner("progressing.sh"), "project.ndproj", report, 60);
+    assertThat(history.runtimes("project.ndproj")).hasSize(4);
+  }
+
+  @Test
+  public void failure() throws Exception {
+    File report = tmp.newFile("report.xml");
+    try {
+      new NDependExecutor().execute(runner("failing.sh"), "project.ndproj", report, 1);
+      fail();
+    } catch (CommandException e) {
+      assertThat(e.getMessage()).contains("NDepend execution failed with exit code: 3");
+      assertThat(e.getMessage()).contains("Last lines of output:\nUnable to load project.ndproj");
+    }
+    assertThat(new NDependRuntimeHistory(tmp.getRoot()).runtimes("project.ndproj")).isEmpty();
+  }
+
+  private static String runner(String name) {
+    return new File("src/test/resources/NDependExecutorTest/" + name).getAbsolutePath();
+  }
+
+}
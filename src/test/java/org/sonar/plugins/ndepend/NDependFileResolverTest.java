@@ -0,0 +1,97 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.issue.Issuable;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NDependFileResolverTest {
+
+  private DefaultFileSystem fs;
+  private DefaultInputFile mainFile;
+  private ResourcePerspectives perspectives;
+
+  @Before
+  public void init() {
+    fs = new DefaultFileSystem();
+    mainFile = new DefaultInputFile("src/Program.cs").setAbsolutePath("C:/Project/src/Program.cs").setType(InputFile.Type.MAIN);
+    fs.add(mainFile);
+    fs.add(new DefaultInputFile("test/ProgramTest.cs").setAbsolutePath("C:/Project/test/ProgramTest.cs").setType(InputFile.Type.TEST));
+
+    perspectives = mock(ResourcePerspectives.class);
+  }
+
+  @Test
+  public void case_sensitive() {
+    NDependFileResolver resolver = new NDependFileResolver(fs, perspectives, true);
+
+    assertThat(resolver.inputFile("C:/Project/src/Program.cs")).isSameAs(mainFile);
+    assertThat(resolver.inputFile("C:\\Project\\src\\Program.cs")).isSameAs(mainFile);
+    assertThat(resolver.inputFile("C:/Project/src/../src/Program.cs")).isSameAs(mainFile);
+    assertThat(resolver.inputFile("c:/project/src/program.cs")).isNull();
+  }
+
+  @Test
+  public void case_insensitive() {
+    NDependFileResolver resolver = new NDependFileResolver(fs, perspectives, false);
+
+    assertThat(resolver.inputFile("c:\\PROJECT\\src\\program.CS")).isSameAs(mainFile);
+    assertThat(resolver.inputFile("C:/Project/src/Other.cs")).isNull();
+  }
+
+  @Test
+  public void normalized_paths() {
+    NDependFileResolver resolver = new NDependFileResolver(fs, perspectives, false);
+
+    assertThat(resolver.normalizedPaths()).containsOnly("c:/project/src/program.cs");
+    assertThat(resolver.normalize("C:\\Project\\src\\Program.cs")).isEqualTo("c:/project/src/program.cs");
+  }
+
+  @Test
+  public void only_main_files() {
+    NDependFileResolver resolver = new NDependFileResolver(fs, perspectives, true);
+
+    assertThat(resolver.inputFile("C:/Project/test/ProgramTest.cs")).isNull();
+  }
+
+  @Test
+  public void issuable_is_memoized() {
+    Issuable issuable = mock(Issuable.class);
+    when(perspectives.as(Issuable.class, mainFile)).thenReturn(issuable);
+
+    NDependFileResolver resolver = new NDependFileResolver(fs, perspectives, true);
+
+    assertThat(resolver.issuable(mainFile)).isSameAs(issuable);
+    assertThat(resolver.issuable(mainFile)).isSameAs(issuable);
+    verify(perspectives, Mockito.times(1)).as(Issuable.class, mainFile);
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NDependGrowingFileInputStreamTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private ExecutorService executorService;
+
+  @Before
+  public void init() {
+    executorService = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void reads_until_the_writer_is_done() throws Exception {
+    final File file = new File(tmp.getRoot(), "growing.txt");
+
+    Future<?> writer = executorService.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+          Files.write("foo", file, Charsets.UTF_8);
+          Thread.sleep(100);
+          Files.append("bar", file, Charsets.UTF_8);
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+
+    InputStream in = new NDependGrowingFileInputStream(file, writer, 10);
+    try {
+      assertThat(new String(ByteStreams.toByteArray(in), Charsets.UTF_8)).isEqualTo("foobar");
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void parse_while_the_rule_runner_writes_the_report() throws Exception {
+    Assume.assumeTrue(File.separatorChar == '/');
+
+    final File runner = new File("src/test/resources/NDependGrowingFileInputStreamTest/slow_runner.sh");
+    final File reportFile = new File(tmp.getRoot(), "ndepend-report.xml");
+
+    final Future<?> execution = executorService.submit(new Runnable() {
+      @Override
+      public void run() {
+        new NDependExecutor().execute(runner.getAbsolutePath(), "project.ndproj", reportFile, 1);
+      }
+    });
+
+    final List<String> issues = Lists.newArrayList();
+    new NDependReportParser(new NDependReportParserCallback() {
+      @Override
+      public void onIssue(String ruleKey, String file, int line) {
+        issues.add(ruleKey + (execution.isDone() ? " once done" : " while running"));
+      }
+    }).parse(reportFile, new NDependGrowingFileInputStream(reportFile, execution, 10));
+
+    execution.get();
+    assertThat(issues).hasSize(2);
+    assertThat(issues.get(0)).isEqualTo("Rule1 while running");
+    assertThat(issues.get(1)).startsWith("Rule2");
+  }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class NDependIssueBufferTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void violations_are_grouped_per_file() {
+    NDependIssueBuffer buffer = new NDependIssueBuffer();
+    buffer.onIssue("Rule1", "A.cs", 1);
+    buffer.onIssue("Rule1", "B.cs", 2);
+    buffer.onIssue("Rule2", "A.cs", 3);
+
+    NDependIssueReporter reporter = mock(NDependIssueReporter.class);
+    buffer.flushTo(reporter);
+
+    ArgumentCaptor<List> a = ArgumentCaptor.forClass(List.class);
+    ArgumentCaptor<List> b = ArgumentCaptor.forClass(List.class);
+    InOrder inOrder = Mockito.inOrder(reporter);
+    inOrder.verify(reporter).report(Mockito.eq("A.cs"), a.capture());
+    inOrder.verify(reporter).report(Mockito.eq("B.cs"), b.capture());
+    inOrder.verifyNoMoreInteractions();
+
+    assertThat(a.getValue()).hasSize(2);
+    assertThat(((NDependViolation) a.getValue().get(0)).ruleKey()).isEqualTo("Rule1");
+    assertThat(((NDependViolation) a.getValue().get(0)).line()).isEqualTo(1);
+    assertThat(((NDependViolation) a.getValue().get(1)).ruleKey()).isEqualTo("Rule2");
+    assertThat(((NDependViolation) a.getValue().get(1)).line()).isEqualTo(3);
+    assertThat(b.getValue()).hasSize(1);
+  }
+
+  @Test
+  public void duplicates_are_removed() {
+    NDependIssueBuffer buffer = new NDependIssueBuffer();
+    buffer.onIssue("Rule1", "A.cs", 9);
+    buffer.onIssue("Rule2", "A.cs", 9);
+    buffer.onIssue("Rule1", "A.cs", 9);
+    buffer.onIssue("Rule1", "A.cs", 7);
+    buffer.onIssue("Rule1", "B.cs", 9);
+
+    NDependIssueReporter reporter = mock(NDependIssueReporter.class);
+    buffer.flushTo(reporter);
+
+    ArgumentCaptor<List> a = ArgumentCaptor.forClass(List.class);
+    Mockito.verify(reporter).report(Mockito.eq("A.cs"), a.capture());
+    Mockito.verify(reporter).report(Mockito.eq("B.cs"), Mockito.anyList());
+
+    assertThat(a.getValue()).hasSize(3);
+    assertThat(((NDependViolation) a.getValue().get(0)).line()).isEqualTo(7);
+    assertThat(((NDependViolation) a.getValue().get(1)).ruleKey()).isEqualTo("Rule1");
+    assertThat(((NDependViolation) a.getValue().get(1)).line()).isEqualTo(9);
+    assertThat(((NDependViolation) a.getValue().get(2)).ruleKey()).isEqualTo("Rule2");
+    assertThat(((NDependViolation) a.getValue().get(2)).line()).isEqualTo(9);
+  }
+
+  @Test
+  public void replay_given_files() {
+    NDependIssueBuffer buffer = new NDependIssueBuffer();
+    buffer.onIssue("Rule1", "A.cs", 1);
+    buffer.onIssue("Rule1", "B.cs", 2);
+    buffer.onIssue("Rule2", "A.cs", 3);
+
+    NDependReportParserCallback callback = mock(NDependReportParserCallback.class);
+    buffer.replay(callback, ImmutableList.of("A.cs", "C.cs"));
+
+    InOrder inOrder = Mockito.inOrder(callback);
+    inOrder.verify(callback).onIssue("Rule1", "A.cs", 1);
+    inOrder.verify(callback).onIssue("Rule2", "A.cs", 3);
+    inOrder.verifyNoMoreInteractions();
+
+    NDependReportParserCallback other = mock(NDependReportParserCallback.class);
+    buffer.replay(other, ImmutableList.of("B.cs"));
+    Mockito.verify(other).onIssue("Rule1", "B.cs", 2);
+    Mockito.verifyNoMoreInteractions(other);
+  }
+
+  @Test
+  public void flush_empties_the_buffer() {
+    NDependIssueBuffer buffer = new NDependIssueBuffer();
+    buffer.onIssue("Rule1", "A.cs", 1);
+
+    buffer.flushTo(mock(NDependIssueReporter.class));
+
+    NDependIssueReporter reporter = mock(NDependIssueReporter.class);
+    buffer.flushTo(reporter);
+    Mockito.verifyZeroInteractions(reporter);
+  }
+
+  @Test
+  public void spilled_violations_are_merged_per_file() throws Exception {
+    File spillDir = tmp.newFolder();
+    NDependIssueBuffer buffer = new NDependIssueBuffer(spillDir, 2);
+    buffer.onIssue("Rule1", "A.cs", 9);
+    buffer.onIssue("Rule1", "B.cs", 9);
+    buffer.onIssue("Rule2", "A.cs", 9);
+    buffer.onIssue("Rule1", "A.cs", 9);
+    buffer.onIssue("Rule1", "A.cs", 7);
+    buffer.onIssue("Rule1", "C.cs", 1);
+    buffer.onIssue("Rule1", "B.cs", 1);
+
+    assertThat(buffer.spilledRuns()).isEqualTo(3);
+
+    NDependIssueReporter reporter = mock(NDependIssueReporter.class);
+    buffer.flushTo(reporter);
+
+    ArgumentCaptor<List> a = ArgumentCaptor.forClass(List.class);
+    ArgumentCaptor<List> b = ArgumentCaptor.forClass(List.class);
+    InOrder inOrder = Mockito.inOrder(reporter);
+    inOrder.verify(reporter).report(Mockito.eq("A.cs"), a.capture());
+    inOrder.verify(reporter).report(Mockito.eq("B.cs"), b.capture());
+    inOrder.verify(reporter).report(Mockito.eq("C.cs"), Mockito.anyList());
+    inOrder.verifyNoMoreInteractions();
+
+    assertThat(a.getValue()).hasSize(3);
+    assertThat(((NDependViolation) a.getValue().get(0)).line()).isEqualTo(7);
+    assertThat(((NDependViolation) a.getValue().get(2)).ruleKey()).isEqualTo("Rule2");
+    assertThat(b.getValue()).hasSize(2);
+    assertThat(spillDir.list()).isEmpty();
+  }
+
+  @Test
+  public void replay_spilled_violations() throws Exception {
+    NDependIssueBuffer buffer = new NDependIssueBuffer(tmp.newFolder(), 2);
+    buffer.onIssue("Rule1", "A.cs", 1);
+    buffer.onIssue("Rule1", "B.cs", 2);
+    buffer.onIssue("Rule2", "A.cs", 3);
+
+    NDependReportParserCallback callback = mock(NDependReportParserCallback.class);
+    buffer.replay(callback, ImmutableList.of("A.cs"));
+
+    InOrder inOrder = Mockito.inOrder(callback);
+    inOrder.verify(callback).onIssue("Rule1", "A.cs", 1);
+    inOrder.verify(callback).onIssue("Rule2", "A.cs", 3);
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void close_deletes_spilled_violations() throws Exception {
+    File spillDir = tmp.newFolder();
+    NDependIssueBuffer buffer = new NDependIssueBuffer(spillDir, 1);
+    buffer.onIssue("Rule1", "A.cs", 1);
+    buffer.replay(mock(NDependReportParserCallback.class), ImmutableList.of("A.cs"));
+    assertThat(spillDir.list()).hasSize(1);
+
+    buffer.close();
+    assertThat(spillDir.list()).isEmpty();
+  }
+
+  @Test
+  public void millions_of_violations_with_a_small_window() throws Exception {
+    int files = 1000;
+    int violations = 3000000;
+
+    NDependIssueBuffer buffer = new NDependIssueBuffer(tmp.newFolder(), 100000);
+    List<String> paths = Lists.newArrayList();
+    for (int i = 0; i < files; i++) {
+      paths.add("File" + i + ".cs");
+    }
+    for (int i = 0; i < violations; i++) {
+      buffer.onIssue("Rule" + (i % 7), paths.get(i % files), i / files);
+    }
+
+    assertThat(buffer.spilledRuns()).isEqualTo(30);
+
+    final long[] replayed = new long[1];
+    final int[] previousLine = {-1};
+    buffer.replay(new NDependReportParserCallback() {
+      @Override
+      public void onIssue(String ruleKey, String file, int line) {
+        assertThat(line).isGreaterThan(previousLine[0]);
+        previousLine[0] = line;
+        replayed[0]++;
+      }
+    }, ImmutableList.of("File42.cs"));
+
+    assertThat(replayed[0]).isEqualTo(violations / files);
+  }
+
+}
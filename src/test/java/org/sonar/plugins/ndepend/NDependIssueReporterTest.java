@@ -0,0 +1,93 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.issue.Issuable.IssueBuilder;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.Rule;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NDependIssueReporterTest {
+
+  private NDependFileResolver fileResolver;
+  private Issuable issuable;
+  private IssueBuilder issueBuilder;
+  private NDependIssueReporter reporter;
+
+  @Before
+  public void init() {
+    DefaultInputFile inputFile = new DefaultInputFile("A.cs");
+    fileResolver = mock(NDependFileResolver.class);
+    when(fileResolver.inputFile("A.cs")).thenReturn(inputFile);
+
+    issuable = mock(Issuable.class);
+    issueBuilder = mock(IssueBuilder.class);
+    when(issuable.newIssueBuilder()).thenReturn(issueBuilder);
+    when(issueBuilder.build()).thenReturn(mock(Issue.class));
+    when(fileResolver.issuable(inputFile)).thenReturn(issuable);
+
+    Rule rule = mock(Rule.class);
+    when(rule.getName()).thenReturn("Rule one");
+    ActiveRule activeRule = mock(ActiveRule.class);
+    when(activeRule.getRuleKey()).thenReturn("Rule1");
+    when(activeRule.getRule()).thenReturn(rule);
+
+    RulesProfile profile = mock(RulesProfile.class);
+    when(profile.getActiveRulesByRepository(NDependPlugin.REPOSITORY_KEY)).thenReturn(ImmutableList.of(activeRule));
+
+    reporter = new NDependIssueReporter(NDependActiveRules.from(profile), fileResolver);
+  }
+
+  @Test
+  public void one_builder_per_file() {
+    reporter.report("A.cs", ImmutableList.of(new NDependViolation("Rule1", 1), new NDependViolation("Rule1", 2), new NDependViolation("Rule2", 3)));
+
+    verify(issuable, Mockito.times(1)).newIssueBuilder();
+    verify(issueBuilder, Mockito.times(2)).ruleKey(RuleKey.of(NDependPlugin.REPOSITORY_KEY, "Rule1"));
+    verify(issueBuilder).line(1);
+    verify(issueBuilder).line(2);
+    verify(issueBuilder, never()).line(3);
+    verify(issuable, Mockito.times(2)).addIssue(Mockito.any(Issue.class));
+  }
+
+  @Test
+  public void unknown_file() {
+    reporter.report("B.cs", ImmutableList.of(new NDependViolation("Rule1", 1)));
+
+    verify(fileResolver, never()).issuable(Mockito.any(DefaultInputFile.class));
+    verify(issuable, never()).addIssue(Mockito.any(Issue.class));
+    assertThat(reporter.skippedIssues().count(NDependIssueReporter.FILE_NOT_IMPORTED, "Rule1")).isEqualTo(1);
+  }
+
+}
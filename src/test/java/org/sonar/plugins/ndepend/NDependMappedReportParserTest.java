@@ -0,0 +1,202 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NDependMappedReportParserTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final RecordingCallback callback = new RecordingCallback();
+
+  @Test
+  public void same_issues_and_counters_as_the_xml_parser() {
+    File file = new File("src/test/resources/NDependReportParserTest/valid.xml");
+    NDependMappedReportParser parser = new NDependMappedReportParser(callback, null);
+    parser.parse(file);
+
+    RecordingCallback expected = new RecordingCallback();
+    NDependReportParser xmlParser = new NDependReportParser(expected);
+    xmlParser.parse(file);
+
+    assertThat(callback.issues).hasSize(7);
+    assertThat(callback.issues).isEqualTo(expected.issues);
+    assertThat(parser.bytesRead()).isEqualTo(file.length());
+    assertThat(parser.elementsScanned()).isEqualTo(xmlParser.elementsScanned());
+  }
+
+  @Test
+  public void generated_report() throws Exception {
+    File file = tmp.newFile("report.xml");
+    new NDependReportGenerator()
+      .setAssemblies(3)
+      .setNamespaces(4)
+      .setTypes(20)
+      .setViolations(3)
+      .setFiles(50)
+      .setRules(30)
+      .setDepth(2)
+      .write(file);
+
+    new NDependMappedReportParser(callback, null).parse(file);
+    RecordingCallback expected = new RecordingCallback();
+    new NDependReportParser(expected).parse(file);
+
+    assertThat(callback.issues).isEqualTo(expected.issues);
+  }
+
+  @Test
+  public void violations_of_inactive_rules_are_dropped() {
+    NDependMappedReportParser parser = new NDependMappedReportParser(callback, ImmutableSet.of("AvoidNamespacesWithFewTypes", "Rule2"));
+    parser.parse(new File("src/test/resources/NDependReportParserTest/valid.xml"));
+
+    assertThat(callback.issues).containsExactly("AvoidNamespacesWithFewTypes|Program.cs|7");
+    assertThat(parser.filteredViolations()).isEqualTo(6);
+  }
+
+  @Test
+  public void strings_are_decoded_once() {
+    final List<String> strings = Lists.newArrayList();
+    new NDependMappedReportParser(new NDependReportParserCallback() {
+      @Override
+      public void onIssue(String ruleKey, String file, int line) {
+        strings.add(ruleKey);
+        strings.add(file);
+      }
+    }, null).parse(new File("src/test/resources/NDependReportParserTest/valid.xml"));
+
+    assertThat(strings).hasSize(14);
+    assertThat(strings.get(3)).isSameAs(strings.get(1));
+    assertThat(strings.get(8)).isSameAs(strings.get(2));
+    assertThat(strings.get(9)).isSameAs(strings.get(1));
+  }
+
+  @Test
+  public void markup() throws Exception {
+    File file = tmp.newFile("markup.xml");
+    Files.write("\uFEFF<?xml version=\"1.0\"?>\n"
+      + "<!-- <Type Name=\"Commented\" File=\"Commented.cs\" Line=\"1\"> -->\n"
+      + "<NDependReport>\n"
+      + "  <Type Name='T' File='Caf\u00e9 &amp; &lt;Bar&gt; &#x41;&#66;.cs' Line='12'><![CDATA[ <RuleViolated Key=\"InCData\" /> ]]>\n"
+      + "    <RuleViolated\n      Key = \"Spaced\"/>\n"
+      + "    <Violations><RuleViolated Key=\"Nested\"></RuleViolated></Violations>\n"
+      + "    <Method Name=\"M\"/>\n"
+      + "    <RuleViolated Key=\"AfterSelfClosingScope\" />\n"
+      + "  </Type>\n"
+      + "  <RuleViolated Key=\"OutOfScope\" />\n"
+      + "</NDependReport>\n", file, Charsets.UTF_8);
+
+    new NDependMappedReportParser(callback, null).parse(file);
+
+    String path = "Caf\u00e9 & <Bar> AB.cs";
+    assertThat(callback.issues).containsExactly("Spaced|" + path + "|12",
+      "Nested|" + path + "|12",
+      "AfterSelfClosingScope|" + path + "|12");
+  }
+
+  @Test
+  public void no_key() {
+    thrown.expectMessage("Missing attribute \"Key\" in element <RuleViolated>");
+    thrown.expectMessage("no_key.xml at line 5");
+
+    new NDependMappedReportParser(callback, null).parse(new File("src/test/resources/NDependReportParserTest/no_key.xml"));
+  }
+
+  @Test
+  public void invalid_line() {
+    thrown.expectMessage("Expected an integer instead of \"foo\" for the attribute \"Line\"");
+    thrown.expectMessage("invalid_line.xml at line 3");
+
+    new NDependMappedReportParser(callback, null).parse(new File("src/test/resources/NDependReportParserTest/invalid_line.xml"));
+  }
+
+  @Test
+  public void truncated() throws Exception {
+    File file = tmp.newFile("truncated.xml");
+    Files.write("<NDependReport>\n  <Type Name=\"T\" File=\"File.cs", file, Charsets.UTF_8);
+
+    thrown.expectMessage("Unexpected end of file");
+    thrown.expectMessage("truncated.xml at line 2");
+
+    new NDependMappedReportParser(callback, null).parse(file);
+  }
+
+  @Test
+  public void can_parse() throws Exception {
+    assertThat(NDependMappedReportParser.canParse(new File("src/test/resources/NDependReportParserTest/valid.xml"))).isTrue();
+    assertThat(NDependMappedReportParser.canParse(new File("src/test/resources/NDependReportParserTest/non_existing.xml"))).isFalse();
+
+    File gzip = tmp.newFile("valid.xml.gz");
+    OutputStream out = new GZIPOutputStream(new FileOutputStream(gzip));
+    try {
+      Files.copy(new File("src/test/resources/NDependReportParserTest/valid.xml"), out);
+    } finally {
+      out.close();
+    }
+    assertThat(NDependMappedReportParser.canParse(gzip)).isFalse();
+
+    File utf16 = tmp.newFile("utf16.xml");
+    Files.write("<NDependReport />", utf16, Charsets.UTF_16);
+    assertThat(NDependMappedReportParser.canParse(utf16)).isFalse();
+  }
+
+  @Test
+  public void selected_by_the_report_parser() throws Exception {
+    File file = new File("src/test/resources/NDependReportParserTest/valid.xml");
+    NDependReportParser parser = new NDependReportParser(callback, NDependReportParser.DEFAULT_BUFFER_SIZE, 1, null, true);
+    parser.parse(file);
+
+    assertThat(callback.issues).hasSize(7);
+    assertThat(parser.bytesRead()).isEqualTo(file.length());
+    assertThat(parser.elementsScanned()).isEqualTo(26);
+  }
+
+  private static class RecordingCallback implements NDependReportParserCallback {
+
+    private final List<String> issues = Lists.newArrayList();
+
+    @Override
+    public void onIssue(String ruleKey, String file, int line) {
+      issues.add(ruleKey + "|" + file + "|" + line);
+    }
+
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.ndepend.NDependMetrics.Phase;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NDependMetricsTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void counters() {
+    NDependMetrics metrics = new NDependMetrics();
+    metrics.addReportBytes(100);
+    metrics.addReportBytes(20);
+    metrics.addElementsScanned(42);
+    metrics.addViolationsSeen(7);
+    metrics.issueCreated();
+    metrics.issueSkipped("reason1");
+    metrics.issueSkipped("reason2");
+    metrics.issueSkipped("reason1");
+    metrics.stop(Phase.PARSING, metrics.start() - 3000000);
+
+    assertThat(metrics.reportBytes()).isEqualTo(120);
+    assertThat(metrics.elementsScanned()).isEqualTo(42);
+    assertThat(metrics.violationsSeen()).isEqualTo(7);
+    assertThat(metrics.issuesCreated()).isEqualTo(1);
+    assertThat(metrics.skippedByReason()).hasSize(2);
+    assertThat(metrics.skippedByReason().get("reason1").longValue()).isEqualTo(2);
+    assertThat(metrics.millis(Phase.PARSING)).isGreaterThanOrEqualTo(3);
+    assertThat(metrics.millis(Phase.EXECUTION)).isEqualTo(0);
+  }
+
+  @Test
+  public void json() throws Exception {
+    NDependMetrics metrics = new NDependMetrics();
+    metrics.addReportBytes(120);
+    metrics.issueCreated();
+    metrics.issueSkipped("the \"reason\"");
+
+    File file = tmp.newFile("metrics.json");
+    metrics.writeJson(file);
+
+    String json = Files.toString(file, Charsets.UTF_8);
+    assertThat(json).contains("\"execution\": 0");
+    assertThat(json).contains("\"reportBytes\": 120");
+    assertThat(json).contains("\"issuesCreated\": 1");
+    assertThat(json).contains("\"the \\\"reason\\\"\": 1");
+  }
+
+}
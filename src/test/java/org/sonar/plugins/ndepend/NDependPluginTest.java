@@ -35,13 +35,26 @@ public class NDependPluginTest {
     assertThat(nonProperties(new NDependPlugin().getExtensions())).containsOnly(
       NDependConfiguration.class,
       NDependRulesDefinition.class,
+      NDependReactorAnalysis.class,
       NDependSensor.class);
 
     assertThat(propertyKeys(new NDependPlugin().getExtensions())).containsOnly(
       "sonar.cs.ndepend.rules",
       "sonar.cs.ndepend.ruleRunnerPath",
       "sonar.cs.ndepend.projectPath",
-      "sonar.cs.ndepend.timeoutMinutes");
+      "sonar.cs.ndepend.timeoutMinutes",
+      "sonar.cs.ndepend.parserThreads",
+      "sonar.cs.ndepend.cacheEnabled",
+      "sonar.cs.ndepend.streamReport",
+      "sonar.cs.ndepend.compressReport",
+      "sonar.cs.ndepend.dumpMetrics",
+      "sonar.cs.ndepend.activeRulesOnly",
+      "sonar.cs.ndepend.concurrentRuns",
+      "sonar.cs.ndepend.maxBufferedViolations",
+      "sonar.cs.ndepend.daemon",
+      "sonar.cs.ndepend.stallTimeoutMinutes",
+      "sonar.cs.ndepend.adaptiveTimeout",
+      "sonar.cs.ndepend.memoryMappedReport");
   }
 
   private static Set<String> nonProperties(List extensions) {
@@ -0,0 +1,72 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NDependProcessOutputTest {
+
+  @Test
+  public void tail() throws Exception {
+    NDependProcessOutput output = new NDependProcessOutput(3, 100);
+    assertThat(output.tail()).isEmpty();
+
+    output.read(stream("first\nsecond\r\nthird\rfourth\n\nlast"), false);
+
+    assertThat(output.lines()).isEqualTo(6);
+    assertThat(output.tail()).containsExactly("fourth", "", "last");
+  }
+
+  @Test
+  public void long_lines_are_truncated() throws Exception {
+    NDependProcessOutput output = new NDependProcessOutput(2, 100);
+    output.read(stream(Strings.repeat("a", 100000) + "\nshort"), true);
+
+    assertThat(output.tail()).hasSize(2);
+    assertThat(output.tail().get(0)).isEqualTo(Strings.repeat("a", 1000) + "...");
+    assertThat(output.tail().get(1)).isEqualTo("short");
+  }
+
+  @Test
+  public void logging_is_throttled() {
+    NDependProcessOutput output = new NDependProcessOutput(10, 10);
+    for (int i = 0; i < 1000; i++) {
+      output.line("line " + i, false);
+    }
+    output.flush();
+
+    assertThat(output.lines()).isEqualTo(1000);
+    assertThat(output.suppressedLines()).isGreaterThan(900);
+    assertThat(output.tail()).hasSize(10);
+    assertThat(output.tail().get(9)).isEqualTo("line 999");
+  }
+
+  private static InputStream stream(String s) {
+    return new ByteArrayInputStream(s.getBytes(Charsets.UTF_8));
+  }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.config.Settings;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class NDependReactorAnalysisTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private File runner;
+  private File projectA;
+  private File projectB;
+  private ProjectDefinition moduleA1;
+  private ProjectDefinition moduleA2;
+  private ProjectDefinition moduleB;
+  private Settings settings;
+  private NDependReactorAnalysis analysis;
+  private RecordingExecutor executor;
+
+  @Before
+  public void init() throws IOException {
+    runner = tmp.newFile("runner.exe");
+    projectA = tmp.newFile("a.ndproj");
+    projectB = tmp.newFile("b.ndproj");
+
+    ProjectDefinition root = module("root", null);
+    moduleA1 = module("a1", projectA);
+    moduleA2 = module("a2", projectA);
+    moduleB = module("b", projectB);
+    root.addSubProject(moduleA1).addSubProject(moduleA2).addSubProject(moduleB);
+
+    settings = new Settings();
+    settings.setProperty(NDependPlugin.RULE_RUNNER_PATH_PROPERTY_KEY, runner.getAbsolutePath());
+    settings.setProperty(NDependPlugin.TIMEOUT_PROPERTY_KEY, 10);
+    executor = new RecordingExecutor();
+    analysis = new NDependReactorAnalysis(settings, new ProjectReactor(root)) {
+      @Override
+      public NDependExecutor executor(NDependConfiguration conf) {
+        return executor;
+      }
+    };
+  }
+
+  @After
+  public void stop() {
+    analysis.stop();
+  }
+
+  @Test
+  public void modules_sharing_a_project_share_its_report() {
+    File report = report(moduleA1, projectA);
+    assertThat(report).isEqualTo(new File(moduleA1.getWorkDir(), "ndepend-report.xml"));
+    assertThat(report(moduleA2, projectA)).isEqualTo(report);
+    assertThat(report(moduleB, projectB)).isEqualTo(new File(moduleB.getWorkDir(), "ndepend-report.xml"));
+
+    assertThat(executor.executions).isEqualTo(ImmutableMultiset.of(projectA.getAbsolutePath(), projectB.getAbsolutePath()));
+  }
+
+  @Test
+  public void projects_of_other_modules_are_executed_concurrently() {
+    settings.setProperty(NDependPlugin.CONCURRENT_RUNS_PROPERTY_KEY, 2);
+    executor.blockUntilBothStarted = true;
+
+    File report = report(moduleA1, projectA);
+
+    assertThat(report).isEqualTo(new File(moduleA1.getWorkDir(), "ndepend-report.xml"));
+    assertThat(report(moduleB, projectB)).isEqualTo(new File(moduleB.getWorkDir(), "ndepend-report.xml"));
+    assertThat(report(moduleA2, projectA)).isEqualTo(report);
+    assertThat(executor.executions).isEqualTo(ImmutableMultiset.of(projectA.getAbsolutePath(), projectB.getAbsolutePath()));
+  }
+
+  @Test
+  public void other_modules_are_executed_with_their_own_settings() throws IOException {
+    settings.setProperty(NDependPlugin.CONCURRENT_RUNS_PROPERTY_KEY, 2);
+    File otherRunner = tmp.newFile("other-runner.exe");
+    moduleB.setProperty(NDependPlugin.RULE_RUNNER_PATH_PROPERTY_KEY, otherRunner.getAbsolutePath());
+    moduleB.setProperty(NDependPlugin.TIMEOUT_PROPERTY_KEY, "20");
+    moduleB.setProperty(NDependPlugin.COMPRESS_REPORT_PROPERTY_KEY, "true");
+
+    report(moduleA1, projectA);
+    assertThat(report(moduleB, projectB)).isEqualTo(new File(moduleB.getWorkDir(), "ndepend-report.xml.gz"));
+
+    assertThat(executor.commands.get(projectA.getAbsolutePath())).isEqualTo(runner.getAbsolutePath() + " 10");
+    assertThat(executor.commands.get(projectB.getAbsolutePath())).isEqualTo(otherRunner.getAbsolutePath() + " 20");
+  }
+
+  @Test
+  public void modules_which_are_not_analyzed_are_not_executed_in_advance() throws IOException {
+    settings.setProperty(NDependPlugin.CONCURRENT_RUNS_PROPERTY_KEY, 2);
+    File projectC = tmp.newFile("c.ndproj");
+    File projectD = tmp.newFile("d.ndproj");
+    ProjectDefinition moduleC = module("c", projectC);
+    moduleC.resetSources();
+    ProjectDefinition moduleD = module("d", projectD);
+    moduleD.setProperty(NDependPlugin.STREAM_REPORT_PROPERTY_KEY, "true");
+    moduleB.getParent().addSubProject(moduleC).addSubProject(moduleD);
+
+    report(moduleA1, projectA);
+
+    assertThat(analysis.streamedRun(executor, conf(moduleB), moduleB.getWorkDir(), ImmutableSet.<String>of())).isNull();
+    assertThat(analysis.streamedRun(executor, conf(moduleC), moduleC.getWorkDir(), ImmutableSet.<String>of())).isNotNull();
+    assertThat(analysis.streamedRun(executor, conf(moduleD), moduleD.getWorkDir(), ImmutableSet.<String>of())).isNotNull();
+  }
+
+  @Test
+  public void streamed_runs_are_shared() {
+    FutureTask<File> run = analysis.streamedRun(executor, conf(moduleA1), moduleA1.getWorkDir(), ImmutableSet.<String>of());
+    assertThat(run).isNotNull();
+    assertThat(analysis.streamedRun(executor, conf(moduleA2), moduleA2.getWorkDir(), ImmutableSet.<String>of())).isNull();
+    assertThat(executor.executions).isEmpty();
+
+    run.run();
+    assertThat(report(moduleA2, projectA)).isEqualTo(new File(moduleA1.getWorkDir(), "ndepend-report.xml"));
+    assertThat(executor.executions).isEqualTo(ImmutableMultiset.of(projectA.getAbsolutePath()));
+  }
+
+  @Test
+  public void failures_are_propagated_to_all_modules_sharing_the_project() {
+    executor.failure = new IllegalStateException("NDepend execution failed");
+
+    for (ProjectDefinition module : new ProjectDefinition[] {moduleA1, moduleA2}) {
+      try {
+        report(module, projectA);
+        fail();
+      } catch (IllegalStateException e) {
+        assertThat(e.getMessage()).isEqualTo("NDepend execution failed");
+      }
+    }
+
+    assertThat(executor.executions.count(projectA.getAbsolutePath())).isEqualTo(1);
+  }
+
+  @Test
+  public void modules_reading_each_report_are_counted() {
+    report(moduleA1, projectA);
+
+    assertThat(analysis.consumers(projectA.getAbsolutePath())).isEqualTo(2);
+    assertThat(analysis.consumers(projectB.getAbsolutePath())).isEqualTo(1);
+    assertThat(analysis.consumers(new File(tmp.getRoot(), "other.ndproj").getAbsolutePath())).isEqualTo(0);
+  }
+
+  private File report(ProjectDefinition module, File ndependProject) {
+    assertThat(conf(module).ndependProjectPath()).isEqualTo(ndependProject.getAbsolutePath());
+    return analysis.report(executor, conf(module), module.getWorkDir(), ImmutableSet.<String>of());
+  }
+
+  private NDependConfiguration conf(ProjectDefinition module) {
+    return new NDependConfiguration(new Settings(settings).addProperties(module.getProperties()));
+  }
+
+  private ProjectDefinition module(String key, @Nullable File ndependProject) throws IOException {
+    File baseDir = tmp.newFolder(key);
+    ProjectDefinition module = ProjectDefinition.create().setKey(key).setBaseDir(baseDir).setWorkDir(new File(baseDir, ".sonar"));
+    if (ndependProject != null) {
+      module.setProperty(NDependPlugin.NDEPEND_PROJECT_PATH_PROPERTY_KEY, ndependProject.getAbsolutePath());
+      new File(baseDir, "src").mkdir();
+      new File(baseDir, "src/Program.cs").createNewFile();
+      module.setSources("src");
+    }
+    return module;
+  }
+
+  private static class RecordingExecutor extends NDependExecutor {
+
+    private final Multiset<String> executions = ConcurrentHashMultiset.create();
+    private final Map<String, String> commands = Maps.newConcurrentMap();
+    private final CountDownLatch started = new CountDownLatch(2);
+    private volatile boolean blockUntilBothStarted;
+    private volatile RuntimeException failure;
+
+    @Override
+    public void execute(String executable, String ndependProject, File reportFile, @Nullable File ruleSetFile, int timeout) {
+      executions.add(ndependProject);
+      commands.put(ndependProject, executable + " " + timeout);
+      if (blockUntilBothStarted) {
+        started.countDown();
+        try {
+          if (!started.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("NDepend projects were not executed concurrently");
+          }
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NDependReportFormatTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void formats() throws Exception {
+    File plain = tmp.newFile("plain.xml");
+    Files.write("<NDepend/>", plain, Charsets.UTF_8);
+    File compressed = tmp.newFile("compressed.xml.gz");
+    Files.write(gzip("<NDepend/>"), compressed);
+    File utf16 = tmp.newFile("utf16.xml");
+    Files.write("\ufeff<NDepend/>", utf16, Charsets.UTF_16LE);
+    File empty = tmp.newFile("empty.xml");
+
+    assertThat(NDependReportFormat.isGzip(plain)).isFalse();
+    assertThat(NDependReportFormat.isPlain(plain)).isTrue();
+    assertThat(NDependReportFormat.isGzip(compressed)).isTrue();
+    assertThat(NDependReportFormat.isPlain(compressed)).isFalse();
+    assertThat(NDependReportFormat.isGzip(utf16)).isFalse();
+    assertThat(NDependReportFormat.isPlain(utf16)).isFalse();
+    assertThat(NDependReportFormat.isGzip(empty)).isFalse();
+  }
+
+  @Test
+  public void decompress_if_needed() throws Exception {
+    InputStream in = NDependReportFormat.decompressIfNeeded(new BufferedInputStream(new ByteArrayInputStream(gzip("<NDepend/>"))), 1024);
+    assertThat(new String(ByteStreams.toByteArray(in), Charsets.UTF_8)).isEqualTo("<NDepend/>");
+
+    in = NDependReportFormat.decompressIfNeeded(new BufferedInputStream(new ByteArrayInputStream("<NDepend/>".getBytes(Charsets.UTF_8))), 1024);
+    assertThat(new String(ByteStreams.toByteArray(in), Charsets.UTF_8)).isEqualTo("<NDepend/>");
+  }
+
+  private static byte[] gzip(String content) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    GZIPOutputStream out = new GZIPOutputStream(bytes);
+    try {
+      out.write(content.getBytes(Charsets.UTF_8));
+    } finally {
+      out.close();
+    }
+    return bytes.toByteArray();
+  }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+public class NDependReportGenerator {
+
+  private int assemblies = 1;
+  private int namespaces = 1;
+  private int types = 1;
+  private int violations = 1;
+  private int files = 1;
+  private int rules = 1;
+  private int depth = 0;
+  private String baseDir = "C:/Solution/src";
+
+  public NDependReportGenerator setAssemblies(int assemblies) {
+    this.assemblies = assemblies;
+    return this;
+  }
+
+  public NDependReportGenerator setNamespaces(int namespaces) {
+    this.namespaces = namespaces;
+    return this;
+  }
+
+  public NDependReportGenerator setTypes(int types) {
+    this.types = types;
+    return this;
+  }
+
+  public NDependReportGenerator setViolations(int violations) {
+    this.violations = violations;
+    return this;
+  }
+
+  public NDependReportGenerator setFiles(int files) {
+    this.files = files;
+    return this;
+  }
+
+  public NDependReportGenerator setRules(int rules) {
+    this.rules = rules;
+    return this;
+  }
+
+  public NDependReportGenerator setDepth(int depth) {
+    this.depth = depth;
+    return this;
+  }
+
+  public NDependReportGenerator setBaseDir(String baseDir) {
+    this.baseDir = baseDir;
+    return this;
+  }
+
+  public String filePath(int index) {
+    return baseDir + "/File" + index + ".cs";
+  }
+
+  public String ruleKey(int index) {
+    return "Rule" + index;
+  }
+
+  public int files() {
+    return files;
+  }
+
+  public int rules() {
+    return rules;
+  }
+
+  public void write(File file) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8));
+    try {
+      write(writer);
+    } finally {
+      writer.close();
+    }
+  }
+
+  public void write(Writer writer) throws IOException {
+    int fileIndex = 0;
+    int ruleIndex = 0;
+
+    writer.write("<?xml version=\"1.0\" encoding=\"utf-8\" standalone=\"yes\"?>\n");
+    writer.write("<NDependReport ProjectName=\"Synthetic\" ProjectFilePath=\"Synthetic.ndproj\" NDependVersion=\"6.0.0.8683\">\n");
+
+    for (int a = 0; a < assemblies; a++) {
+      writer.write("  <Assembly Name=\"Assembly" + a + "\" File=\"Assembly" + a + ".dll\">\n");
+      writer.write("    <Namespaces>\n");
+
+      for (int n = 0; n < namespaces; n++) {
+        writer.write("      <Namespace Name=\"Namespace" + a + "_" + n + "\">\n");
+        writer.write("        <Types>\n");
+
+        for (int t = 0; t < types; t++) {
+          String path = filePath(fileIndex++ % files);
+          writer.write("          <Type Name=\"Type" + t + "\" File=\"" + path + "\" Line=\"" + (t + 1) + "\">\n");
+          ruleIndex = writeViolations(writer, ruleIndex);
+
+          for (int d = 0; d < depth; d++) {
+            writer.write("<Members><Method Name=\"Method" + d + "()\" File=\"" + path + "\" Line=\"" + (t + d + 2) + "\">\n");
+            ruleIndex = writeViolations(writer, ruleIndex);
+          }
+          for (int d = 0; d < depth; d++) {
+            writer.write("</Method></Members>\n");
+          }
+
+          writer.write("          </Type>\n");
+        }
+
+        writer.write("        </Types>\n");
+        writer.write("      </Namespace>\n");
+      }
+
+      writer.write("    </Namespaces>\n");
+      writer.write("  </Assembly>\n");
+    }
+
+    writer.write("</NDependReport>\n");
+  }
+
+  private int writeViolations(Writer writer, int firstRuleIndex) throws IOException {
+    int ruleIndex = firstRuleIndex;
+
+    writer.write("            <Violations>\n");
+    for (int v = 0; v < violations; v++) {
+      writer.write("              <RuleViolated Key=\"" + ruleKey(ruleIndex++ % rules) + "\" Priority=\"MAJOR\" Category=\"design\" />\n");
+    }
+    writer.write("            </Violations>\n");
+
+    return ruleIndex;
+  }
+
+}
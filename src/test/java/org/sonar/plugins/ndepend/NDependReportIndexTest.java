@@ -0,0 +1,187 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NDependReportIndexTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void nested_ranges_are_merged() throws Exception {
+    File report = tmp.newFile("ndepend-report.xml");
+    Files.copy(new File("src/test/resources/NDependReportParserTest/valid.xml"), report);
+
+    NDependReportIndex index = NDependReportIndex.build(report);
+
+    assertThat(index.files()).containsOnly("Program.cs");
+    List<int[]> ranges = index.ranges(ImmutableSet.of("Program.cs", "Unknown.cs"));
+    assertThat(ranges).hasSize(1);
+    String content = Files.toString(report, Charsets.UTF_8);
+    assertThat(content.substring(ranges.get(0)[0], ranges.get(0)[1])).startsWith("<Namespace Name=\"ConsoleApplication1\"").endsWith("</Namespace>");
+    assertThat(index.ranges(ImmutableSet.of("Unknown.cs"))).isEmpty();
+  }
+
+  @Test
+  public void sidecar_file() throws Exception {
+    File report = tmp.newFile("ndepend-report.xml");
+    Files.copy(new File("src/test/resources/NDependReportParserTest/valid.xml"), report);
+    assertThat(NDependReportIndex.load(report)).isNull();
+
+    NDependReportIndex.forReport(report);
+    assertThat(NDependReportIndex.indexFile(report)).isEqualTo(new File(tmp.getRoot(), "ndepend-report.xml.idx"));
+    assertThat(NDependReportIndex.indexFile(report).isFile()).isTrue();
+
+    NDependReportIndex loaded = NDependReportIndex.load(report);
+    assertThat(loaded.files()).containsOnly("Program.cs");
+    assertThat(loaded.ranges(ImmutableSet.of("Program.cs")).get(0)).isEqualTo(NDependReportIndex.build(report).ranges(ImmutableSet.of("Program.cs")).get(0));
+
+    Files.append("\n", report, Charsets.UTF_8);
+    assertThat(NDependReportIndex.load(report)).isNull();
+  }
+
+  @Test
+  public void report_rewritten_with_the_same_length_and_timestamp() throws Exception {
+    File report = tmp.newFile("ndepend-report.xml");
+    Files.copy(new File("src/test/resources/NDependReportParserTest/valid.xml"), report);
+    NDependReportIndex.forReport(report);
+    long lastModified = report.lastModified();
+
+    String content = Files.toString(report, Charsets.UTF_8);
+    Files.write(content.replace("Program.cs", "Programm.c"), report, Charsets.UTF_8);
+    report.setLastModified(lastModified);
+
+    assertThat(NDependReportIndex.load(report)).isNull();
+    assertThat(NDependReportIndex.forReport(report).files()).containsOnly("Programm.c");
+  }
+
+  @Test
+  public void issues_of_some_files() throws Exception {
+    File report = tmp.newFile("ndepend-report.xml");
+    NDependReportGenerator generator = new NDependReportGenerator()
+      .setAssemblies(3)
+      .setNamespaces(4)
+      .setTypes(20)
+      .setViolations(3)
+      .setFiles(50)
+      .setRules(30)
+      .setDepth(2);
+    generator.write(report);
+
+    Set<String> files = ImmutableSet.of(generator.filePath(3), generator.filePath(17), generator.filePath(42));
+    List<String> expected = Lists.newArrayList();
+    for (String issue : parse(report, null, false)) {
+      if (files.contains(issue.split("\\|")[1])) {
+        expected.add(issue);
+      }
+    }
+
+    assertThat(expected).isNotEmpty();
+    assertThat(parse(report, files, true)).isEqualTo(expected);
+    // Second time through the saved index
+    assertThat(parse(report, files, true)).isEqualTo(expected);
+  }
+
+  @Test
+  public void gzip_compressed_reports_are_fully_parsed() throws Exception {
+    File report = tmp.newFile("ndepend-report.xml.gz");
+    OutputStream out = new GZIPOutputStream(new FileOutputStream(report));
+    try {
+      Files.copy(new File("src/test/resources/NDependReportParserTest/multiple_assemblies.xml"), out);
+    } finally {
+      out.close();
+    }
+
+    assertThat(parse(report, ImmutableSet.of("File2.cs"), false)).containsExactly("Rule2|File2.cs|2");
+    assertThat(NDependReportIndex.indexFile(report).exists()).isFalse();
+  }
+
+  @Test
+  public void issues_of_files_named_as_normalized() throws Exception {
+    Function<String, String> normalizer = new Function<String, String>() {
+      @Override
+      public String apply(String file) {
+        return file.toLowerCase(Locale.ENGLISH);
+      }
+    };
+
+    File report = tmp.newFile("ndepend-report.xml");
+    Files.copy(new File("src/test/resources/NDependReportParserTest/multiple_assemblies.xml"), report);
+    assertThat(parse(report, ImmutableSet.of("file2.cs"), normalizer)).containsExactly("Rule2|File2.cs|2");
+    assertThat(NDependReportIndex.indexFile(report).isFile()).isTrue();
+
+    File compressed = tmp.newFile("ndepend-report.xml.gz");
+    OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed));
+    try {
+      Files.copy(report, out);
+    } finally {
+      out.close();
+    }
+    assertThat(parse(compressed, ImmutableSet.of("file2.cs"), normalizer)).containsExactly("Rule2|File2.cs|2");
+  }
+
+  private static List<String> parse(File report, Set<String> files, Function<String, String> normalizer) {
+    final List<String> issues = Lists.newArrayList();
+    new NDependReportParser(new NDependReportParserCallback() {
+      @Override
+      public void onIssue(String ruleKey, String file, int line) {
+        issues.add(ruleKey + "|" + file + "|" + line);
+      }
+    }).parse(report, files, normalizer);
+    return issues;
+  }
+
+  private static List<String> parse(File report, Set<String> files, boolean expectIndex) {
+    final List<String> issues = Lists.newArrayList();
+    NDependReportParser parser = new NDependReportParser(new NDependReportParserCallback() {
+      @Override
+      public void onIssue(String ruleKey, String file, int line) {
+        issues.add(ruleKey + "|" + file + "|" + line);
+      }
+    });
+    if (files == null) {
+      parser.parse(report);
+    } else {
+      parser.parse(report, files);
+      assertThat(NDependReportIndex.indexFile(report).isFile()).isEqualTo(expectIndex);
+    }
+    return issues;
+  }
+
+}
@@ -19,14 +19,26 @@
  */
 package org.sonar.plugins.ndepend;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -35,6 +47,9 @@ public class NDependReportParserTest {
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   private NDependReportParserCallback callback;
   private NDependReportParser parser;
 
@@ -56,6 +71,146 @@ public class NDependReportParserTest {
     verify(callback, Mockito.times(7)).onIssue(Mockito.anyString(), Mockito.anyString(), Mockito.anyInt());
   }
 
+  @Test
+  public void counters() {
+    File file = new File("src/test/resources/NDependReportParserTest/valid.xml");
+    parser.parse(file);
+
+    assertThat(parser.bytesRead()).isEqualTo(file.length());
+    assertThat(parser.elementsScanned()).isEqualTo(26);
+  }
+
+  @Test
+  public void violations_of_inactive_rules_are_dropped() {
+    NDependReportParser filteringParser = new NDependReportParser(callback, NDependReportParser.DEFAULT_BUFFER_SIZE, 1,
+      ImmutableSet.of("AvoidNamespacesWithFewTypes", "Rule2"));
+    filteringParser.parse(new File("src/test/resources/NDependReportParserTest/valid.xml"));
+
+    verify(callback).onIssue("AvoidNamespacesWithFewTypes", "Program.cs", 7);
+    verify(callback, Mockito.times(1)).onIssue(Mockito.anyString(), Mockito.anyString(), Mockito.anyInt());
+    assertThat(filteringParser.filteredViolations()).isEqualTo(6);
+  }
+
+  @Test
+  public void strings_are_interned() {
+    final List<String> strings = Lists.newArrayList();
+    new NDependReportParser(new NDependReportParserCallback() {
+      @Override
+      public void onIssue(String ruleKey, String file, int line) {
+        strings.add(ruleKey);
+        strings.add(file);
+      }
+    }).parse(new File("src/test/resources/NDependReportParserTest/valid.xml"));
+
+    assertThat(strings).hasSize(14);
+    assertThat(strings.get(3)).isSameAs(strings.get(1));
+    assertThat(strings.get(8)).isSameAs(strings.get(2));
+    assertThat(strings.get(9)).isSameAs(strings.get(1));
+  }
+
+  @Test
+  public void gzip_compressed() throws Exception {
+    File file = tmp.newFile("valid.xml.gz");
+    OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+    try {
+      Files.copy(new File("src/test/resources/NDependReportParserTest/valid.xml"), out);
+    } finally {
+      out.close();
+    }
+
+    new NDependReportParser(callback, 16).parse(file);
+
+    verify(callback).onIssue("AvoidNamespacesWithFewTypes", "Program.cs", 7);
+    verify(callback, Mockito.times(7)).onIssue(Mockito.anyString(), Mockito.anyString(), Mockito.anyInt());
+  }
+
+  @Test
+  public void gzip_compressed_stream() throws Exception {
+    File file = tmp.newFile("valid.xml.gz");
+    OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+    try {
+      Files.copy(new File("src/test/resources/NDependReportParserTest/valid.xml"), out);
+    } finally {
+      out.close();
+    }
+
+    parser.parse(file, new FileInputStream(file));
+
+    verify(callback).onIssue("AvoidNamespacesWithFewTypes", "Program.cs", 7);
+    verify(callback, Mockito.times(7)).onIssue(Mockito.anyString(), Mockito.anyString(), Mockito.anyInt());
+  }
+
+  @Test
+  public void parallel() {
+    new NDependReportParser(callback, NDependReportParser.DEFAULT_BUFFER_SIZE, 2).parse(new File("src/test/resources/NDependReportParserTest/multiple_assemblies.xml"));
+
+    InOrder inOrder = Mockito.inOrder(callback);
+    inOrder.verify(callback).onIssue("Rule1", "File1.cs", 1);
+    inOrder.verify(callback).onIssue("Rule2", "File2.cs", 2);
+    inOrder.verify(callback).onIssue("Rule3", "File3.cs", 3);
+    inOrder.verifyNoMoreInteractions();
+  }
+
+  @Test
+  public void parallel_with_more_assemblies_than_parsed_ahead() throws Exception {
+    File file = tmp.newFile("many_assemblies.xml");
+    new NDependReportGenerator()
+      .setAssemblies(20)
+      .setNamespaces(2)
+      .setTypes(5)
+      .setViolations(2)
+      .setFiles(30)
+      .setRules(10)
+      .write(file);
+
+    List<String> parallel = issues(file, 2);
+    assertThat(parallel).hasSize(400);
+    assertThat(parallel).isEqualTo(issues(file, 1));
+  }
+
+  private static List<String> issues(File file, int threads) {
+    final List<String> issues = Lists.newArrayList();
+    new NDependReportParser(new NDependReportParserCallback() {
+      @Override
+      public void onIssue(String ruleKey, String issueFile, int line) {
+        issues.add(ruleKey + "|" + issueFile + "|" + line);
+      }
+    }, NDependReportParser.DEFAULT_BUFFER_SIZE, threads).parse(file);
+    return issues;
+  }
+
+  @Test
+  public void parallel_reports_absolute_line_numbers() {
+    thrown.expectMessage("Expected an integer instead of \"bar\" for the attribute \"Line\"");
+    thrown.expectMessage("multiple_assemblies_invalid_line.xml at line 23");
+
+    new NDependReportParser(callback, NDependReportParser.DEFAULT_BUFFER_SIZE, 2).parse(new File("src/test/resources/NDependReportParserTest/multiple_assemblies_invalid_line.xml"));
+  }
+
+  @Test
+  public void deeply_nested_scopes() throws Exception {
+    int depth = 5000;
+    StringBuilder sb = new StringBuilder("<NDependReport>");
+    for (int i = 1; i <= depth; i++) {
+      sb.append("<Type Name=\"T").append(i).append("\" File=\"File.cs\" Line=\"").append(i).append("\">");
+    }
+    sb.append("<RuleViolated Key=\"Innermost\" />");
+    for (int i = 1; i <= depth; i++) {
+      sb.append("</Type><RuleViolated Key=\"Outer\" />");
+    }
+    sb.append("</NDependReport>");
+
+    File file = tmp.newFile("deep.xml");
+    Files.write(sb.toString(), file, Charsets.UTF_8);
+
+    parser.parse(file);
+
+    verify(callback).onIssue("Innermost", "File.cs", depth);
+    verify(callback).onIssue("Outer", "File.cs", 1);
+    verify(callback).onIssue("Outer", "File.cs", depth - 1);
+    verify(callback, Mockito.times(depth - 1)).onIssue(Mockito.eq("Outer"), Mockito.anyString(), Mockito.anyInt());
+  }
+
   @Test
   public void no_key() {
     thrown.expectMessage("Missing attribute \"Key\" in element <RuleViolated>");
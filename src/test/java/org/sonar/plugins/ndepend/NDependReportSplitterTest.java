@@ -0,0 +1,112 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.ndepend.NDependReportSplitter.Chunk;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NDependReportSplitterTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void split() throws Exception {
+    File file = new File("src/test/resources/NDependReportParserTest/multiple_assemblies.xml");
+    List<Chunk> chunks = NDependReportSplitter.split(file, 7);
+
+    assertThat(chunks).hasSize(3);
+    assertThat(chunks.get(0).firstLine()).isEqualTo(3);
+    assertThat(chunks.get(1).firstLine()).isEqualTo(12);
+    assertThat(chunks.get(2).firstLine()).isEqualTo(21);
+
+    String second = read(chunks.get(1), file);
+    assertThat(second).startsWith("<Assembly Name=\"Assembly2\"");
+    assertThat(second).endsWith("</Assembly>");
+    assertThat(second).contains("Rule2");
+    assertThat(second).excludes("Rule1");
+    assertThat(second).excludes("Rule3");
+  }
+
+  @Test
+  public void unbalanced() throws Exception {
+    File file = tmp.newFile("unbalanced.xml");
+    Files.write("<NDependReport><Assembly Name=\"A\" /><Assembly Name=\"B\"></Assembly></NDependReport>", file, Charsets.UTF_8);
+
+    assertThat(NDependReportSplitter.split(file, 16)).isEmpty();
+  }
+
+  @Test
+  public void similar_tag_names() throws Exception {
+    File file = tmp.newFile("similar.xml");
+    Files.write("<NDependReport><Assemblies><AssemblyRef Name=\"A\"></AssemblyRef><Assembly Name=\"B\"></Assembly></Assemblies></NDependReport>", file, Charsets.UTF_8);
+
+    List<Chunk> chunks = NDependReportSplitter.split(file, 16);
+    assertThat(chunks).hasSize(1);
+    assertThat(read(chunks.get(0), file)).isEqualTo("<Assembly Name=\"B\"></Assembly>");
+  }
+
+  @Test
+  public void comments_and_cdata_are_skipped() throws Exception {
+    File file = tmp.newFile("comments.xml");
+    Files.write("<NDependReport>\n"
+      + "<!-- <Assembly Name=\"Commented\"> --->\n"
+      + "<Assembly Name=\"A\"><![CDATA[</Assembly>]]]></Assembly>\n"
+      + "<!--</Assembly>-->\n"
+      + "<Assembly Name=\"B\"></Assembly>\n"
+      + "</NDependReport>", file, Charsets.UTF_8);
+
+    List<Chunk> chunks = NDependReportSplitter.split(file, 16);
+    assertThat(chunks).hasSize(2);
+    assertThat(read(chunks.get(0), file)).isEqualTo("<Assembly Name=\"A\"><![CDATA[</Assembly>]]]></Assembly>");
+    assertThat(chunks.get(0).firstLine()).isEqualTo(3);
+    assertThat(read(chunks.get(1), file)).isEqualTo("<Assembly Name=\"B\"></Assembly>");
+    assertThat(chunks.get(1).firstLine()).isEqualTo(5);
+  }
+
+  @Test
+  public void unterminated_comment() throws Exception {
+    File file = tmp.newFile("unterminated.xml");
+    Files.write("<NDependReport><Assembly Name=\"A\"></Assembly><!-- <Assembly Name=\"B\"></Assembly></NDependReport>", file, Charsets.UTF_8);
+
+    assertThat(NDependReportSplitter.split(file, 16)).isEmpty();
+  }
+
+  private static String read(Chunk chunk, File file) throws Exception {
+    InputStream in = chunk.open(file);
+    try {
+      return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+    } finally {
+      in.close();
+    }
+  }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NDependRuleCatalogCacheTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private File dir;
+  private NDependRuleCatalogCache cache;
+
+  @Before
+  public void init() throws Exception {
+    dir = new File(tmp.getRoot(), "cache");
+    cache = new NDependRuleCatalogCache(dir);
+  }
+
+  @Test
+  public void round_trip() {
+    StringBuilder description = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      description.append("<p>Description \u00e9</p>");
+    }
+
+    cache.save("<rules/>", ImmutableList.of(
+      new NDependRuleMetadata("Key1", "BLOCKER", "code-quality", "Name1", description.toString()),
+      new NDependRuleMetadata("Key2", "MAJOR", null, "Name2", "Description2")));
+
+    List<NDependRuleMetadata> rules = cache.load("<rules/>");
+    assertThat(rules).hasSize(2);
+    assertThat(rules.get(0).key()).isEqualTo("Key1");
+    assertThat(rules.get(0).severity()).isEqualTo("BLOCKER");
+    assertThat(rules.get(0).category()).isEqualTo("code-quality");
+    assertThat(rules.get(0).name()).isEqualTo("Name1");
+    assertThat(rules.get(0).description()).isEqualTo(description.toString());
+    assertThat(rules.get(1).key()).isEqualTo("Key2");
+    assertThat(rules.get(1).category()).isNull();
+  }
+
+  @Test
+  public void cache_is_keyed_by_content() {
+    cache.save("<rules/>", ImmutableList.of(new NDependRuleMetadata("Key1", "BLOCKER", null, "Name1", "Description1")));
+
+    assertThat(cache.load("<rules></rules>")).isNull();
+    assertThat(cache.load("<rules/>")).hasSize(1);
+  }
+
+  @Test
+  public void catalogs_of_previous_rules_are_deleted() {
+    cache.save("<rules/>", ImmutableList.of(new NDependRuleMetadata("Key1", "BLOCKER", null, "Name1", "Description1")));
+    cache.save("<rules></rules>", ImmutableList.of(new NDependRuleMetadata("Key1", "BLOCKER", null, "Name1", "Description1")));
+
+    assertThat(dir.list()).hasSize(1);
+    assertThat(cache.load("<rules/>")).isNull();
+    assertThat(cache.load("<rules></rules>")).hasSize(1);
+  }
+
+  @Test
+  public void loaded_rules_do_not_depend_on_the_cache_file() {
+    cache.save("<rules/>", ImmutableList.of(
+      new NDependRuleMetadata("Key1", "BLOCKER", null, "Name1", "Description1"),
+      new NDependRuleMetadata("Key2", "MAJOR", null, "Name2", "Description2")));
+
+    List<NDependRuleMetadata> rules = cache.load("<rules/>");
+    for (File file : dir.listFiles()) {
+      file.delete();
+    }
+
+    assertThat(rules.get(0).description()).isEqualTo("Description1");
+    assertThat(rules.get(1).description()).isEqualTo("Description2");
+  }
+
+  @Test
+  public void corrupted_cache_is_ignored() throws Exception {
+    cache.save("<rules/>", ImmutableList.of(new NDependRuleMetadata("Key1", "BLOCKER", null, "Name1", "Description1")));
+
+    for (File file : dir.listFiles()) {
+      Files.write("corrupted", file, Charsets.UTF_8);
+    }
+
+    assertThat(cache.load("<rules/>")).isNull();
+  }
+
+  @Test
+  public void invalid_lengths_are_ignored() throws Exception {
+    cache.save("<rules/>", ImmutableList.of(new NDependRuleMetadata("Key1", "BLOCKER", null, "Name1", "Description1")));
+    File file = dir.listFiles()[0];
+    byte[] content = Files.toByteArray(file);
+
+    // Length of the first rule key
+    byte[] corrupted = content.clone();
+    corrupted[8] = 0x7F;
+    Files.write(corrupted, file);
+    assertThat(cache.load("<rules/>")).isNull();
+
+    // Number of rules
+    corrupted = content.clone();
+    corrupted[4] = (byte) 0x80;
+    Files.write(corrupted, file);
+    assertThat(cache.load("<rules/>")).isNull();
+
+    // Length of the first description
+    corrupted = content.clone();
+    corrupted[content.length - 4 - "Description1".length()] = 0x7F;
+    Files.write(corrupted, file);
+    assertThat(cache.load("<rules/>")).isNull();
+
+    Files.write(content, file);
+    assertThat(cache.load("<rules/>")).hasSize(1);
+  }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.platform.ServerFileSystem;
+import org.sonar.api.server.rule.RulesDefinition.Context;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NDependRuleSetWriterTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void only_given_rules_are_written() throws Exception {
+    String rules = Files.toString(new File("src/test/resources/NDependRulesDefinitionTest/valid.xml"), Charsets.UTF_8);
+    File file = tmp.newFile("rules.xml");
+
+    assertThat(NDependRuleSetWriter.write(rules, ImmutableSet.of("Key1", "Key3", "Key4"), file)).isEqualTo(2);
+
+    String written = Files.toString(file, Charsets.UTF_8);
+    assertThat(written).contains("ProjectName=\"ConsoleApplication1\"");
+    assertThat(written).contains("Key1").contains("Key3").excludes("Key2");
+
+    NDependConfiguration conf = mock(NDependConfiguration.class);
+    when(conf.rules()).thenReturn(written);
+    Context context = new Context();
+    ServerFileSystem fileSystem = mock(ServerFileSystem.class);
+    when(fileSystem.getHomeDir()).thenReturn(tmp.newFolder());
+    new NDependRulesDefinition(conf, fileSystem).define(context);
+
+    assertThat(context.repository("ndepend").rules()).hasSize(2);
+    assertThat(context.repository("ndepend").rule("Key3").name()).isEqualTo("Name3");
+    assertThat(context.repository("ndepend").rule("Key3").htmlDescription()).isEqualTo("Description3");
+  }
+
+  @Test
+  public void no_rules() throws Exception {
+    String rules = Files.toString(new File("src/test/resources/NDependRulesDefinitionTest/valid.xml"), Charsets.UTF_8);
+    File file = tmp.newFile("rules.xml");
+
+    assertThat(NDependRuleSetWriter.write(rules, ImmutableSet.<String>of(), file)).isEqualTo(0);
+    assertThat(Files.toString(file, Charsets.UTF_8)).contains("NDependRules").excludes("<Rule ");
+  }
+
+}
@@ -20,9 +20,12 @@
 package org.sonar.plugins.ndepend;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.Files;
 import junit.framework.Assert;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.platform.ServerFileSystem;
 import org.sonar.api.server.rule.RulesDefinition.Context;
 import org.sonar.api.server.rule.RulesDefinition.Rule;
 
@@ -34,13 +37,16 @@ import static org.mockito.Mockito.when;
 
 public class NDependRulesDefinitionTest {
 
+  @org.junit.Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   @Test
   public void test() throws Exception {
     NDependConfiguration conf = mock(NDependConfiguration.class);
     when(conf.rules()).thenReturn(Files.toString(new File("src/test/resources/NDependRulesDefinitionTest/valid.xml"), Charsets.UTF_8));
 
     Context context = new Context();
-    new NDependRulesDefinition(conf).define(context);
+    new NDependRulesDefinition(conf, fileSystem()).define(context);
 
     assertThat(context.repositories()).hasSize(1);
 
@@ -67,6 +73,52 @@ public class NDependRulesDefinitionTest {
       }
     }
     assertThat(context.repository("ndepend").rules()).hasSize(3);
+    assertThat(new File(tmp.getRoot(), "home/data/ndepend").list()).hasSize(1);
+  }
+
+  @Test
+  public void parsed_rules_are_cached() throws Exception {
+    NDependConfiguration conf = mock(NDependConfiguration.class);
+    when(conf.rules()).thenReturn(Files.toString(new File("src/test/resources/NDependRulesDefinitionTest/valid.xml"), Charsets.UTF_8));
+    NDependRuleCatalogCache cache = new NDependRuleCatalogCache(tmp.newFolder());
+
+    new NDependRulesDefinition(conf, cache).define(new Context());
+    assertThat(cache.load(conf.rules())).hasSize(3);
+
+    Context context = new Context();
+    new NDependRulesDefinition(conf, cache).define(context);
+    assertThat(context.repository("ndepend").rules()).hasSize(3);
+    assertThat(context.repository("ndepend").rule("Key1").htmlDescription()).isEqualTo("Description1");
+    assertThat(context.repository("ndepend").rule("Key1").tags()).containsOnly("code-quality");
+  }
+
+  @Test
+  public void cache_survives_a_server_restart() throws Exception {
+    NDependConfiguration conf = mock(NDependConfiguration.class);
+    when(conf.rules()).thenReturn(Files.toString(new File("src/test/resources/NDependRulesDefinitionTest/valid.xml"), Charsets.UTF_8));
+
+    new NDependRulesDefinition(conf, fileSystem()).define(new Context());
+    File[] cacheFiles = new File(tmp.getRoot(), "home/data/ndepend").listFiles();
+    assertThat(cacheFiles).hasSize(1);
+    cacheFiles[0].setLastModified(1000L);
+
+    Context context = new Context();
+    new NDependRulesDefinition(conf, fileSystem()).define(context);
+    assertThat(context.repository("ndepend").rules()).hasSize(3);
+    assertThat(cacheFiles[0].lastModified()).isEqualTo(1000L);
+  }
+
+  @Test
+  public void cached_rules_are_not_parsed_again() throws Exception {
+    NDependConfiguration conf = mock(NDependConfiguration.class);
+    when(conf.rules()).thenReturn("<not parsed");
+    NDependRuleCatalogCache cache = new NDependRuleCatalogCache(tmp.newFolder());
+    cache.save("<not parsed", ImmutableList.of(new NDependRuleMetadata("Key1", "MAJOR", null, "Name1", "Description1")));
+
+    Context context = new Context();
+    new NDependRulesDefinition(conf, cache).define(context);
+    assertThat(context.repository("ndepend").rules()).hasSize(1);
+    assertThat(context.repository("ndepend").rule("Key1").name()).isEqualTo("Name1");
   }
 
   @Test
@@ -75,7 +127,7 @@ public class NDependRulesDefinitionTest {
     when(conf.rules()).thenReturn("");
 
     Context context = new Context();
-    new NDependRulesDefinition(conf).define(context);
+    new NDependRulesDefinition(conf, fileSystem()).define(context);
     assertThat(context.repository("ndepend").rules()).isEmpty();
   }
 
@@ -85,7 +137,7 @@ public class NDependRulesDefinitionTest {
     when(conf.rules()).thenReturn(Files.toString(new File("src/test/resources/NDependRulesDefinitionTest/no_key.xml"), Charsets.UTF_8));
 
     Context context = new Context();
-    new NDependRulesDefinition(conf).define(context);
+    new NDependRulesDefinition(conf, fileSystem()).define(context);
     assertThat(context.repository("ndepend").rules()).isEmpty();
   }
 
@@ -95,7 +147,7 @@ public class NDependRulesDefinitionTest {
     when(conf.rules()).thenReturn(Files.toString(new File("src/test/resources/NDependRulesDefinitionTest/no_priority.xml"), Charsets.UTF_8));
 
     Context context = new Context();
-    new NDependRulesDefinition(conf).define(context);
+    new NDependRulesDefinition(conf, fileSystem()).define(context);
     assertThat(context.repository("ndepend").rules()).isEmpty();
   }
 
@@ -105,7 +157,7 @@ public class NDependRulesDefinitionTest {
     when(conf.rules()).thenReturn(Files.toString(new File("src/test/resources/NDependRulesDefinitionTest/no_name.xml"), Charsets.UTF_8));
 
     Context context = new Context();
-    new NDependRulesDefinition(conf).define(context);
+    new NDependRulesDefinition(conf, fileSystem()).define(context);
     assertThat(context.repository("ndepend").rules()).isEmpty();
   }
 
@@ -115,8 +167,44 @@ public class NDependRulesDefinitionTest {
     when(conf.rules()).thenReturn(Files.toString(new File("src/test/resources/NDependRulesDefinitionTest/no_description.xml"), Charsets.UTF_8));
 
     Context context = new Context();
-    new NDependRulesDefinition(conf).define(context);
+    new NDependRulesDefinition(conf, fileSystem()).define(context);
     assertThat(context.repository("ndepend").rules()).isEmpty();
   }
 
+  @Test
+  public void should_not_fail_on_duplicate_key() throws Exception {
+    NDependConfiguration conf = mock(NDependConfiguration.class);
+    when(conf.rules()).thenReturn(
+      "<NDependRules>"
+        + "<Rule Key=\"Key1\" Priority=\"MAJOR\"><Name>Name1</Name><Description>Description1</Description></Rule>"
+        + "<Rule Key=\"Key1\" Priority=\"MAJOR\"><Name>Name2</Name><Description>Description2</Description></Rule>"
+        + "</NDependRules>");
+
+    Context context = new Context();
+    new NDependRulesDefinition(conf, fileSystem()).define(context);
+    assertThat(context.repository("ndepend").rules()).hasSize(1);
+    assertThat(context.repository("ndepend").rule("Key1").name()).isEqualTo("Name1");
+  }
+
+  @Test
+  public void should_not_fail_on_unknown_priority() throws Exception {
+    NDependConfiguration conf = mock(NDependConfiguration.class);
+    when(conf.rules()).thenReturn(
+      "<NDependRules>"
+        + "<Rule Key=\"Key1\" Priority=\"UNKNOWN\"><Name>Name1</Name><Description>Description1</Description></Rule>"
+        + "<Rule Key=\"Key2\" Priority=\"MAJOR\"><Name>Name2</Name><Description>Description2</Description></Rule>"
+        + "</NDependRules>");
+
+    Context context = new Context();
+    new NDependRulesDefinition(conf, fileSystem()).define(context);
+    assertThat(context.repository("ndepend").rules()).hasSize(1);
+    assertThat(context.repository("ndepend").rule("Key2").name()).isEqualTo("Name2");
+  }
+
+  private ServerFileSystem fileSystem() {
+    ServerFileSystem fileSystem = mock(ServerFileSystem.class);
+    when(fileSystem.getHomeDir()).thenReturn(new File(tmp.getRoot(), "home"));
+    return fileSystem;
+  }
+
 }
@@ -0,0 +1,69 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NDependRuntimeHistoryTest {
+
+  private static final long TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void last_runtimes_are_kept() {
+    NDependRuntimeHistory history = new NDependRuntimeHistory(tmp.getRoot());
+    assertThat(history.runtimes("a.ndproj")).isEmpty();
+
+    for (long runtime = 1; runtime <= 7; runtime++) {
+      history.record("a.ndproj", runtime);
+    }
+    history.record("b.ndproj", 42);
+
+    NDependRuntimeHistory reloaded = new NDependRuntimeHistory(tmp.getRoot());
+    assertThat(reloaded.runtimes("a.ndproj")).containsExactly(3L, 4L, 5L, 6L, 7L);
+    assertThat(reloaded.runtimes("b.ndproj")).containsExactly(42L);
+  }
+
+  @Test
+  public void deadline() {
+    NDependRuntimeHistory history = new NDependRuntimeHistory(tmp.getRoot());
+    history.record("a.ndproj", TimeUnit.MINUTES.toMillis(1));
+    history.record("a.ndproj", TimeUnit.MINUTES.toMillis(2));
+    assertThat(history.deadlineMillis("a.ndproj", TIMEOUT)).isEqualTo(TIMEOUT);
+
+    history.record("a.ndproj", TimeUnit.MINUTES.toMillis(1));
+    assertThat(history.deadlineMillis("a.ndproj", TIMEOUT)).isEqualTo(TimeUnit.MINUTES.toMillis(6));
+    assertThat(history.deadlineMillis("a.ndproj", TimeUnit.MINUTES.toMillis(5))).isEqualTo(TimeUnit.MINUTES.toMillis(5));
+
+    history.record("b.ndproj", 1);
+    history.record("b.ndproj", 1);
+    history.record("b.ndproj", 1);
+    assertThat(history.deadlineMillis("b.ndproj", TIMEOUT)).isEqualTo(TimeUnit.MINUTES.toMillis(1));
+  }
+
+}
@@ -19,17 +19,23 @@
  */
 package org.sonar.plugins.ndepend;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Files;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultFileSystem;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
 import org.sonar.api.issue.Issuable;
 import org.sonar.api.issue.Issuable.IssueBuilder;
 import org.sonar.api.issue.Issue;
@@ -42,9 +48,18 @@ import org.sonar.api.rules.ActiveRule;
 import org.sonar.api.rules.Rule;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -64,6 +79,10 @@ public class NDependSensorTest {
   private Issuable issuable;
   private IssueBuilder issueBuilder;
   private Issue issue;
+  private File workDir;
+  private NDependReactorAnalysis reactorAnalysis;
+  private NDependSensor sensor;
+  private RulesProfile rulesProfile;
 
   @Test
   public void shouldExecuteOnProject() {
@@ -72,7 +91,7 @@ public class NDependSensorTest {
 
     Project project = mock(Project.class);
 
-    NDependSensor sensor = new NDependSensor(mock(NDependConfiguration.class), fs, profile, mock(ResourcePerspectives.class));
+    NDependSensor sensor = new NDependSensor(mock(NDependConfiguration.class), fs, profile, mock(ResourcePerspectives.class), mock(NDependReactorAnalysis.class));
 
     when(profile.getActiveRulesByRepository("ndepend")).thenReturn(ImmutableList.<ActiveRule>of());
     assertThat(sensor.shouldExecuteOnProject(project)).isFalse();
@@ -96,13 +115,13 @@ public class NDependSensorTest {
     when(conf.ruleRunnerPath()).thenReturn("NDepend.SonarQube.RuleRunner.exe");
     when(conf.ndependProjectPath()).thenReturn("project.ndproj");
     when(conf.timeout()).thenReturn(42);
+    when(conf.reportFileName()).thenReturn("ndepend-report.xml");
 
     fs = new DefaultFileSystem();
-    File workDir = tmp.newFolder("NDependSensorTest");
+    workDir = tmp.newFolder("NDependSensorTest");
     fs.setWorkDir(workDir);
 
-    File reportFile = new File(workDir, "ndepend-report.xml");
-    Files.copy(new File("src/test/resources/NDependSensorTest/valid.xml"), reportFile);
+    Files.copy(new File("src/test/resources/NDependSensorTest/valid.xml"), new File(workDir, "ndepend-report.xml"));
 
     inputFile = new DefaultInputFile("Program.cs").setAbsolutePath("Program.cs");
     fs.add(inputFile);
@@ -124,21 +143,216 @@ public class NDependSensorTest {
     Rule rule = mock(Rule.class);
     when(rule.getName()).thenReturn("my rule name");
     ActiveRule activeRule = mock(ActiveRule.class);
+    when(activeRule.getRuleKey()).thenReturn("ClassWithNoDescendantShouldBeSealedIfPossible");
     when(activeRule.getRule()).thenReturn(rule);
 
-    RulesProfile rulesProfile = mock(RulesProfile.class);
-    when(rulesProfile.getActiveRule(NDependPlugin.REPOSITORY_KEY, "ClassWithNoDescendantShouldBeSealedIfPossible")).thenReturn(activeRule);
+    rulesProfile = mock(RulesProfile.class);
+    when(rulesProfile.getActiveRulesByRepository(NDependPlugin.REPOSITORY_KEY)).thenReturn(ImmutableList.of(activeRule));
 
-    NDependSensor sensor = new NDependSensor(conf, fs, rulesProfile, perspectives);
+    reactorAnalysis = new NDependReactorAnalysis(new Settings(), new ProjectReactor(ProjectDefinition.create()));
+    sensor = new NDependSensor(conf, fs, rulesProfile, perspectives, reactorAnalysis);
 
     context = mock(SensorContext.class);
-    sensor.analyze(context, executor);
-
-    verify(executor).execute("NDepend.SonarQube.RuleRunner.exe", "project.ndproj", reportFile, 42);
   }
 
   @Test
   public void issue() {
+    analyze();
+
+    verify(executor).execute("NDepend.SonarQube.RuleRunner.exe", "project.ndproj", new File(workDir, "ndepend-report.xml"), null, 42);
+    verifyIssue();
+  }
+
+  @Test
+  public void compressed_report() throws Exception {
+    when(conf.reportFileName()).thenReturn("ndepend-report.xml.gz");
+    File reportFile = new File(workDir, "ndepend-report.xml.gz");
+    OutputStream out = new GZIPOutputStream(new FileOutputStream(reportFile));
+    try {
+      Files.copy(new File("src/test/resources/NDependSensorTest/valid.xml"), out);
+    } finally {
+      out.close();
+    }
+
+    analyze();
+
+    verify(executor).execute("NDepend.SonarQube.RuleRunner.exe", "project.ndproj", reportFile, null, 42);
+    verifyIssue();
+  }
+
+  @Test
+  public void stream_report() {
+    when(conf.streamReport()).thenReturn(true);
+    File reportFile = new File(workDir, "ndepend-report.xml");
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        Files.copy(new File("src/test/resources/NDependSensorTest/valid.xml"), (File) invocation.getArguments()[2]);
+        return null;
+      }
+    }).when(executor).execute("NDepend.SonarQube.RuleRunner.exe", "project.ndproj", reportFile, null, 42);
+
+    analyze();
+
+    verify(executor).execute("NDepend.SonarQube.RuleRunner.exe", "project.ndproj", reportFile, null, 42);
+    verifyIssue();
+  }
+
+  @Test
+  public void active_rules_only() throws Exception {
+    when(conf.activeRulesOnly()).thenReturn(true);
+    when(conf.rules()).thenReturn(
+      "<NDependRules>"
+        + "<Rule Key=\"ClassWithNoDescendantShouldBeSealedIfPossible\" Priority=\"MAJOR\"><Name>Name1</Name><Description>Description1</Description></Rule>"
+        + "<Rule Key=\"InactiveRule\" Priority=\"MAJOR\"><Name>Name2</Name><Description>Description2</Description></Rule>"
+        + "</NDependRules>");
+
+    analyze();
+
+    File ruleSetFile = new File(workDir, "ndepend-rules.xml");
+    verify(executor).execute("NDepend.SonarQube.RuleRunner.exe", "project.ndproj", new File(workDir, "ndepend-report.xml"), ruleSetFile, 42);
+    assertThat(Files.toString(ruleSetFile, Charsets.UTF_8)).contains("ClassWithNoDescendantShouldBeSealedIfPossible").excludes("InactiveRule");
+    verifyIssue();
+  }
+
+  @Test
+  public void concurrent_runs() throws Exception {
+    File moduleRunner = tmp.newFile("module-runner.exe");
+    File moduleNdproj = tmp.newFile("module.ndproj");
+    File moduleBaseDir = tmp.newFolder("module");
+    Files.touch(new File(moduleBaseDir, "Module.cs"));
+    File moduleWorkDir = new File(moduleBaseDir, ".sonar");
+    ProjectDefinition root = ProjectDefinition.create();
+    root.addSubProject(ProjectDefinition.create()
+      .setBaseDir(moduleBaseDir)
+      .setWorkDir(moduleWorkDir)
+      .setSources(".")
+      .setProperty(NDependPlugin.RULE_RUNNER_PATH_PROPERTY_KEY, moduleRunner.getAbsolutePath())
+      .setProperty(NDependPlugin.NDEPEND_PROJECT_PATH_PROPERTY_KEY, moduleNdproj.getAbsolutePath())
+      .setProperty(NDependPlugin.TIMEOUT_PROPERTY_KEY, "24"));
+
+    Settings settings = new Settings();
+    settings.setProperty(NDependPlugin.CONCURRENT_RUNS_PROPERTY_KEY, 2);
+    reactorAnalysis = new NDependReactorAnalysis(settings, new ProjectReactor(root)) {
+      @Override
+      public NDependExecutor executor(NDependConfiguration conf) {
+        return executor;
+      }
+    };
+    sensor = new NDependSensor(conf, fs, rulesProfile, perspectives, reactorAnalysis);
+
+    try {
+      sensor.analyze(context, executor);
+
+      verify(executor).execute("NDepend.SonarQube.RuleRunner.exe", "project.ndproj", new File(workDir, "ndepend-report.xml"), null, 42);
+      verify(executor, timeout(10000)).execute(moduleRunner.getAbsolutePath(), moduleNdproj.getAbsolutePath(), new File(moduleWorkDir, "ndepend-report.xml"), null, 24);
+      verifyIssue();
+    } finally {
+      reactorAnalysis.stop();
+    }
+  }
+
+  @Test
+  public void modules_sharing_a_streamed_project_run_it_once() throws Exception {
+    when(conf.streamReport()).thenReturn(true);
+    File reportFile = new File(workDir, "ndepend-report.xml");
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        Files.copy(new File("src/test/resources/NDependSensorTest/valid.xml"), (File) invocation.getArguments()[2]);
+        return null;
+      }
+    }).when(executor).execute("NDepend.SonarQube.RuleRunner.exe", "project.ndproj", reportFile, null, 42);
+
+    DefaultFileSystem otherFs = new DefaultFileSystem();
+    otherFs.setWorkDir(tmp.newFolder("other"));
+    otherFs.add(inputFile);
+    NDependSensor otherSensor = new NDependSensor(conf, otherFs, rulesProfile, perspectives, reactorAnalysis);
+    try {
+      sensor.analyze(context, executor);
+      otherSensor.analyze(context, executor);
+    } finally {
+      reactorAnalysis.stop();
+    }
+
+    verify(executor, times(1)).execute("NDepend.SonarQube.RuleRunner.exe", "project.ndproj", reportFile, null, 42);
+    verify(issuable, times(2)).addIssue(issue);
+  }
+
+  @Test
+  public void modules_sharing_a_project_read_their_files_from_its_report() throws Exception {
+    File ndproj = tmp.newFile("shared.ndproj");
+    when(conf.ndependProjectPath()).thenReturn(ndproj.getAbsolutePath());
+    ProjectDefinition root = ProjectDefinition.create();
+    root.addSubProject(module("module1", ndproj)).addSubProject(module("module2", ndproj));
+    reactorAnalysis = new NDependReactorAnalysis(new Settings(), new ProjectReactor(root));
+    sensor = new NDependSensor(conf, fs, rulesProfile, perspectives, reactorAnalysis);
+    NDependSensor otherSensor = new NDependSensor(conf, fs, rulesProfile, perspectives, reactorAnalysis);
+    File reportFile = new File(workDir, "ndepend-report.xml");
+    try {
+      sensor.analyze(context, executor);
+      otherSensor.analyze(context, executor);
+    } finally {
+      reactorAnalysis.stop();
+    }
+
+    verify(executor, times(1)).execute("NDepend.SonarQube.RuleRunner.exe", ndproj.getAbsolutePath(), reportFile, null, 42);
+    verify(issuable, times(2)).addIssue(issue);
+    assertThat(NDependReportIndex.indexFile(reportFile).isFile()).isTrue();
+  }
+
+  @Test
+  public void report_read_by_a_single_module_is_fully_parsed() {
+    analyze();
+
+    assertThat(NDependReportIndex.indexFile(new File(workDir, "ndepend-report.xml")).exists()).isFalse();
+    verifyIssue();
+  }
+
+  @Test
+  public void cache_hit_does_not_execute() throws Exception {
+    File runner = tmp.newFile("runner.exe");
+    File projectDir = tmp.newFolder("project");
+    Files.write("v1", new File(projectDir, "ConsoleApplication1.exe"), Charsets.UTF_8);
+    File ndproj = new File(projectDir, "project.ndproj");
+    Files.write("<NDepend><Assemblies><Name>ConsoleApplication1</Name></Assemblies><Dirs><Dir>$(NdProjectDir)</Dir></Dirs></NDepend>", ndproj, Charsets.UTF_8);
+
+    when(conf.cacheEnabled()).thenReturn(true);
+    when(conf.ruleRunnerPath()).thenReturn(runner.getAbsolutePath());
+    when(conf.ndependProjectPath()).thenReturn(ndproj.getAbsolutePath());
+    when(conf.rules()).thenReturn("<rules/>");
+
+    analyze();
+    verify(executor).execute(runner.getAbsolutePath(), ndproj.getAbsolutePath(), new File(workDir, "ndepend-report.xml"), null, 42);
+
+    reactorAnalysis = new NDependReactorAnalysis(new Settings(), new ProjectReactor(ProjectDefinition.create()));
+    sensor = new NDependSensor(conf, fs, rulesProfile, perspectives, reactorAnalysis);
+    analyze();
+
+    verify(executor, times(1)).execute(anyString(), anyString(), any(File.class), any(File.class), anyInt());
+    verify(issuable, times(2)).addIssue(issue);
+  }
+
+  private ProjectDefinition module(String key, File ndependProject) throws Exception {
+    File baseDir = tmp.newFolder(key);
+    Files.touch(new File(baseDir, "Program.cs"));
+    return ProjectDefinition.create()
+      .setKey(key)
+      .setBaseDir(baseDir)
+      .setWorkDir(new File(baseDir, ".sonar"))
+      .setSources(".")
+      .setProperty(NDependPlugin.NDEPEND_PROJECT_PATH_PROPERTY_KEY, ndependProject.getAbsolutePath());
+  }
+
+  private void analyze() {
+    try {
+      sensor.analyze(context, executor);
+    } finally {
+      reactorAnalysis.stop();
+    }
+  }
+
+  private void verifyIssue() {
     verify(issueBuilder).ruleKey(RuleKey.of(NDependPlugin.REPOSITORY_KEY, "ClassWithNoDescendantShouldBeSealedIfPossible"));
     verify(issueBuilder).message("my rule name");
     verify(issueBuilder).line(9);
@@ -0,0 +1,86 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NDependSkippedIssuesTest {
+
+  @Test
+  public void summary() {
+    Logger log = mock(Logger.class);
+    NDependSkippedIssues skippedIssues = new NDependSkippedIssues(log);
+    skippedIssues.record("reason1", "Rule1", "A.cs", 1);
+    skippedIssues.record("reason1", "Rule2", "A.cs", 2);
+    skippedIssues.record("reason1", "Rule2", "B.cs", 3);
+    skippedIssues.record("reason2", "Rule1", "C.cs", 4);
+
+    assertThat(skippedIssues.total()).isEqualTo(4);
+    assertThat(skippedIssues.count("reason1", "Rule2")).isEqualTo(2);
+    assertThat(skippedIssues.count("reason2", "Rule2")).isEqualTo(0);
+
+    skippedIssues.logSummary();
+
+    ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+    verify(log).info(message.capture());
+    assertThat(message.getValue()).isEqualTo("4 NDepend violations were not reported as issues."
+      + " 3 because reason1 (top rules: Rule2=2, Rule1=1)."
+      + " 1 because reason2 (top rules: Rule1=1)."
+      + " Top files: A.cs=2, B.cs=1, C.cs=1.");
+  }
+
+  @Test
+  public void no_summary_when_nothing_was_skipped() {
+    Logger log = mock(Logger.class);
+    new NDependSkippedIssues(log).logSummary();
+    Mockito.verifyZeroInteractions(log);
+  }
+
+  @Test
+  public void sampled_details_in_debug() {
+    Logger log = mock(Logger.class);
+    when(log.isDebugEnabled()).thenReturn(true);
+    NDependSkippedIssues skippedIssues = new NDependSkippedIssues(log);
+    for (int i = 0; i < 1500; i++) {
+      skippedIssues.record("reason", "Rule", "A.cs", i);
+    }
+    verify(log, Mockito.times(2)).debug(Mockito.anyString());
+  }
+
+  @Test
+  public void no_details_without_debug() {
+    Logger log = mock(Logger.class);
+    NDependSkippedIssues skippedIssues = new NDependSkippedIssues(log);
+    for (int i = 0; i < 1500; i++) {
+      skippedIssues.record("reason", "Rule", "A.cs", i);
+    }
+    verify(log, never()).debug(Mockito.anyString());
+  }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * SonarQube NDepend Plugin
+ * Copyright (C) 2015 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.ndepend;
+
+import org.junit.Test;
+
+import javax.xml.stream.XMLInputFactory;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NDependXmlFactoryTest {
+
+  @Test
+  public void shared_instance() {
+    assertThat(NDependXmlFactory.inputFactory()).isSameAs(NDependXmlFactory.inputFactory());
+  }
+
+  @Test
+  public void dtd_and_external_entities_are_disabled() {
+    XMLInputFactory factory = NDependXmlFactory.createInputFactory();
+
+    assertThat(factory.getProperty(XMLInputFactory.SUPPORT_DTD)).isEqualTo(false);
+    assertThat(factory.getProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES)).isEqualTo(false);
+    assertThat(factory.getProperty(XMLInputFactory.IS_COALESCING)).isEqualTo(false);
+  }
+
+}
@@ -0,0 +1,19 @@
+#!/bin/sh
+# Stub of NDepend.SonarQube.RuleRunner.exe --daemon: answers PING and ANALYZE requests read from its standard input
+mute=false
+while IFS='	' read -r command project report ruleset; do
+  case "$command" in
+    PING)
+      if [ "$mute" = false ]; then echo PONG; fi ;;
+    ANALYZE)
+      case "$project" in
+        *crash*) exit 1 ;;
+        *stall*) echo "Loading $project" >&2; sleep 30 ;;
+        *fail*) echo "ERROR Unable to load $project" ;;
+        *)
+          echo "<NDependReport ProjectFilePath=\"$project\" RuleSet=\"$ruleset\" />" > "$report"
+          case "$project" in *mute*) mute=true ;; esac
+          echo OK ;;
+      esac ;;
+  esac
+done
@@ -0,0 +1,4 @@
+#!/bin/sh
+# Stub of NDepend.SonarQube.RuleRunner.exe which fails
+echo "Unable to load $1" >&2
+exit 3
@@ -0,0 +1,4 @@
+#!/bin/sh
+# Stub of NDepend.SonarQube.RuleRunner.exe which hangs after having started
+echo "Loading $1"
+sleep 30
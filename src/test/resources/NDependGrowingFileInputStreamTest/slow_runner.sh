@@ -0,0 +1,28 @@
+#!/bin/sh
+# Stub of NDepend.SonarQube.RuleRunner.exe which writes its report in two steps: <ndproj> <report>
+report="$2"
+
+cat > "$report" <<REPORT
+<?xml version="1.0" encoding="utf-8" standalone="yes"?>
+<NDependReport ProjectName="Slow" ProjectFilePath="$1" NDependVersion="6.0.0.8683">
+  <Assembly Name="Slow" File="Slow.dll">
+    <Namespaces>
+      <Namespace Name="First" File="First.cs" Line="1">
+        <Violations>
+          <RuleViolated Key="Rule1" Priority="MAJOR" Category="design" />
+        </Violations>
+      </Namespace>
+REPORT
+
+sleep 2
+
+cat >> "$report" <<REPORT
+      <Namespace Name="Second" File="Second.cs" Line="2">
+        <Violations>
+          <RuleViolated Key="Rule2" Priority="MAJOR" Category="design" />
+        </Violations>
+      </Namespace>
+    </Namespaces>
+  </Assembly>
+</NDependReport>
+REPORT